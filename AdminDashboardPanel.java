@@ -19,15 +19,18 @@ import java.time.ZoneId;
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
-import java.io.File;
 
 class AdminDashboardPanel extends JPanel {
+  private static final int SEARCH_DEBOUNCE_MILLIS = 150;
+
   private final GuardDirectory guardDirectory;
   private final AdminDirectory adminDirectory;
   private final VisitorLogPanel logPanel;
   private final JLabel adminInfoLabel = new JLabel();
   // page info label used for pagination status
   private final JLabel pageInfoLabel = new JLabel();
+  // persistence and search cache metrics shown under the log
+  private final JLabel storageStatusLabel = new JLabel();
 
   AdminDashboardPanel(GuardDirectory guardDirectory,
                       AdminDirectory adminDirectory,
@@ -92,15 +95,21 @@ class AdminDashboardPanel extends JPanel {
     System.arraycopy(cols, 0, columnChoices, 1, cols.length);
     JComboBox<String> columnChooser = new JComboBox<>(columnChoices);
     columnChooser.setToolTipText("Choose a column to restrict searches or select 'All Columns'.");
+    // typing restarts the timer, so only the text the admin pauses on is searched
+    javax.swing.Timer searchDebounce = new javax.swing.Timer(SEARCH_DEBOUNCE_MILLIS, e -> {
+      logPanel.setSearchQuery(searchField.getText());
+      updatePageLabel();
+    });
+    searchDebounce.setRepeats(false);
     searchField.getDocument().addDocumentListener(new DocumentListener() {
       @Override
-      public void insertUpdate(DocumentEvent e) { logPanel.setSearchQuery(searchField.getText()); updatePageLabel(); }
+      public void insertUpdate(DocumentEvent e) { searchDebounce.restart(); }
 
       @Override
-      public void removeUpdate(DocumentEvent e) { logPanel.setSearchQuery(searchField.getText()); updatePageLabel(); }
+      public void removeUpdate(DocumentEvent e) { searchDebounce.restart(); }
 
       @Override
-      public void changedUpdate(DocumentEvent e) { logPanel.setSearchQuery(searchField.getText()); updatePageLabel(); }
+      public void changedUpdate(DocumentEvent e) { searchDebounce.restart(); }
     });
 
     columnChooser.addActionListener(e -> {
@@ -108,6 +117,27 @@ class AdminDashboardPanel extends JPanel {
       logPanel.setSearchColumn(idx <= 0 ? -1 : idx - 1);
       updatePageLabel();
     });
+
+    JCheckBox querySyntax = new JCheckBox("Query syntax");
+    querySyntax.setToolTipText("<html>Read the search box as a query, e.g. gate:\"Gate A\" AND checkout:none AND checkin&gt;=08:00<br>"
+        + "Fields: name, contact, id, purpose, area, guard, gate, checkin, checkout. "
+        + "Use : to match part of a value, = for the whole value,<br>&gt; &gt;= &lt; &lt;= for dates and times, "
+        + "none / any for missing times, AND, OR, NOT and parentheses.</html>");
+    JCheckBox fuzzyNames = new JCheckBox("Sounds like");
+    fuzzyNames.setToolTipText("Match visitor names by spelling and sound (Delacruz, Dela Cruz; Jos\u00e9, Jose), closest first.");
+    querySyntax.addActionListener(e -> {
+      if (querySyntax.isSelected()) fuzzyNames.setSelected(false);
+      logPanel.setQuerySyntax(querySyntax.isSelected());
+      // neither a query, which names its own fields, nor a name search uses the column chooser
+      columnChooser.setEnabled(!querySyntax.isSelected() && !fuzzyNames.isSelected());
+      updatePageLabel();
+    });
+    fuzzyNames.addActionListener(e -> {
+      if (fuzzyNames.isSelected()) querySyntax.setSelected(false);
+      logPanel.setFuzzyNames(fuzzyNames.isSelected());
+      columnChooser.setEnabled(!querySyntax.isSelected() && !fuzzyNames.isSelected());
+      updatePageLabel();
+    });
     // Date range pickers (JSpinner date widgets) + enable checkbox
     JLabel fromLabel = new JLabel("From:");
     SpinnerDateModel fromModel = new SpinnerDateModel(new Date(), null, null, java.util.Calendar.DAY_OF_MONTH);
@@ -175,46 +205,87 @@ class AdminDashboardPanel extends JPanel {
     // export and load buttons
     JButton loadFromFile = new JButton("Load from File");
     loadFromFile.setToolTipText("Load visitor logs from a previous day's exported file.");
+    JButton loadRange = new JButton("Load Range");
+    loadRange.setToolTipText("Load every visitor between the From and To dates from all saved days.");
+    JButton rescanFiles = new JButton("Rescan Files");
+    rescanFiles.setToolTipText("Re-read the list of saved days from src/data, e.g. after copying files in by hand.");
     JButton exportTxt = new JButton("Export TXT");
     exportTxt.setToolTipText("Export the entire visitor log to a human-readable text file in working directory.");
     
     loadFromFile.addActionListener(e -> {
-      File dataDir = new File("src/data");
-      if (!dataDir.exists() || !dataDir.isDirectory()) {
-        JOptionPane.showMessageDialog(this, "Data directory not found!", "Error", JOptionPane.ERROR_MESSAGE);
-        return;
+      DataCatalog catalog = visitorTableModel.getCatalog();
+      java.util.List<DataCatalog.Entry> days = catalog.days();
+      if (days.isEmpty()) {
+        // files copied in by hand are not in the catalog yet
+        catalog.rescan();
+        days = catalog.days();
       }
-      
-      File[] files = dataDir.listFiles((dir, name) -> name.startsWith("visitor_logs_") && name.endsWith(".txt"));
-      if (files == null || files.length == 0) {
+      if (days.isEmpty()) {
         JOptionPane.showMessageDialog(this, "No visitor log files found in src/data/", "Info", JOptionPane.INFORMATION_MESSAGE);
         return;
       }
       
-      java.util.Arrays.sort(files, (a, b) -> b.getName().compareTo(a.getName()));
-      
-      String[] fileNames = new String[files.length];
-      for (int i = 0; i < files.length; i++) {
-        fileNames[i] = files[i].getName();
+      // newest first, with the catalog's counts so nothing has to be opened to choose
+      String[] choices = new String[days.size()];
+      for (int i = 0; i < days.size(); i++) {
+        DataCatalog.Entry day = days.get(i);
+        choices[i] = String.format("%s  (%d visitors, %d open)", day.getFileName(), day.getRows(), day.getOpenVisits());
       }
       
-      String selectedFile = (String) JOptionPane.showInputDialog(
+      String choice = (String) JOptionPane.showInputDialog(
         this,
         "Select a file to load:",
         "Load Visitor Logs",
         JOptionPane.QUESTION_MESSAGE,
         null,
-        fileNames,
-        fileNames[0]
+        choices,
+        choices[0]
       );
       
-      if (selectedFile != null) {
+      if (choice != null) {
+        String selectedFile = days.get(java.util.Arrays.asList(choices).indexOf(choice)).getFileName();
         logPanel.loadFromFile(selectedFile);
-        JOptionPane.showMessageDialog(this, "Loaded " + selectedFile, "Success", JOptionPane.INFORMATION_MESSAGE);
+        JournalLoadReport report = visitorTableModel.getLastLoadReport();
+        if (report != null && report.hasProblems()) {
+          JOptionPane.showMessageDialog(this, report.describe(), "Loaded With Problems", JOptionPane.WARNING_MESSAGE);
+        } else {
+          JOptionPane.showMessageDialog(this, "Loaded " + selectedFile, "Success", JOptionPane.INFORMATION_MESSAGE);
+        }
         updatePageLabel();
       }
     });
     
+    loadRange.addActionListener(e -> {
+      LocalDate f = toLocalDate((Date) fromSpinner.getValue());
+      LocalDate t = toLocalDate((Date) toSpinner.getValue());
+      if (f != null && t != null && f.isAfter(t)) {
+        JOptionPane.showMessageDialog(this, "The From date is after the To date.", "Invalid Range", JOptionPane.WARNING_MESSAGE);
+        return;
+      }
+      boolean useCheckOut = dateFieldChooser.getSelectedIndex() == 1;
+      loadRange.setEnabled(false);
+      loadRange.setText("Loading...");
+      logPanel.loadRange(f, t, useCheckOut, done -> {
+        updatePageLabel();
+        if (done) {
+          loadRange.setEnabled(true);
+          loadRange.setText("Load Range");
+        }
+      });
+      updatePageLabel();
+    });
+
+    rescanFiles.addActionListener(e -> {
+      DataCatalog catalog = visitorTableModel.getCatalog();
+      rescanFiles.setEnabled(false);
+      rescanFiles.setText("Rescanning...");
+      catalog.rescanLater(() -> javax.swing.SwingUtilities.invokeLater(() -> {
+        rescanFiles.setEnabled(true);
+        rescanFiles.setText("Rescan Files");
+        JOptionPane.showMessageDialog(this, catalog.days().size() + " saved day(s) in src/data/", "Rescan", JOptionPane.INFORMATION_MESSAGE);
+      }));
+    });
+
     exportTxt.addActionListener(e -> {
       String date = java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"));
       String filename = "VisitorsLogs_" + date + ".txt";
@@ -226,6 +297,8 @@ class AdminDashboardPanel extends JPanel {
     searchPanel.add(searchLabel);
     searchPanel.add(searchField);
     searchPanel.add(columnChooser);
+    searchPanel.add(querySyntax);
+    searchPanel.add(fuzzyNames);
     searchPanel.add(enableDateFilter);
     searchPanel.add(fromLabel);
     searchPanel.add(fromSpinner);
@@ -238,15 +311,33 @@ class AdminDashboardPanel extends JPanel {
     searchPanel.add(pageInfoLabel);
     searchPanel.add(nextPage);
     searchPanel.add(loadFromFile);
+    searchPanel.add(loadRange);
+    searchPanel.add(rescanFiles);
     searchPanel.add(exportTxt);
 
     topRow.add(searchPanel, BorderLayout.EAST);
     add(topRow, BorderLayout.NORTH);
     // set initial label and update function
+    logPanel.setFilterListener(this::updatePageLabel);
     updatePageLabel();
     // ensure page info is shown
     // pageInfoLabel is updated by updatePageLabel() invoked from listeners
     add(splitPane, BorderLayout.CENTER);
+
+    storageStatusLabel.setFont(UITheme.BODY_FONT.deriveFont(12f));
+    storageStatusLabel.setForeground(java.awt.Color.DARK_GRAY);
+    JPanel bottom = new JPanel(new BorderLayout(0, 6));
+    bottom.setBackground(UITheme.LIGHT_BG);
+    bottom.add(new OverstayPanel(visitorTableModel.getOverstays()), BorderLayout.NORTH);
+    bottom.add(new OccupancyPanel(visitorTableModel.getOccupancy()), BorderLayout.CENTER);
+    bottom.add(storageStatusLabel, BorderLayout.SOUTH);
+    add(bottom, BorderLayout.SOUTH);
+    JournalWriter journalWriter = visitorTableModel.getJournalWriter();
+    VisitorSearchIndex searchIndex = visitorTableModel.getSearchIndex();
+    Runnable showStats = () -> storageStatusLabel.setText(
+        journalWriter.describeStats() + " | " + searchIndex.describeCacheStats());
+    showStats.run();
+    new javax.swing.Timer(2000, e -> showStats.run()).start();
   }
 
   void setActiveAdmin(Admin admin) {
@@ -261,11 +352,17 @@ class AdminDashboardPanel extends JPanel {
   }
 
   // parseDate removed - date pickers use JSpinner and produce LocalDate values directly
+  private static LocalDate toLocalDate(Date date) {
+    return date == null ? null : date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+  }
 
   private void updatePageLabel() {
     int cur = logPanel.getCurrentPage();
     int tot = logPanel.getTotalPages();
     int items = logPanel.getTotalMatches();
-    pageInfoLabel.setText(String.format("Page %d/%d (%d)", cur, tot, items));
+    String error = logPanel.getQueryError();
+    pageInfoLabel.setText(String.format("Page %d/%d (%d)%s", cur, tot, items,
+        error != null ? " - " + error : logPanel.isSearching() ? " searching\u2026" : ""));
+    pageInfoLabel.setForeground(error != null ? java.awt.Color.RED.darker() : javax.swing.UIManager.getColor("Label.foreground"));
   }
 }
@@ -0,0 +1,36 @@
+import java.text.CollationKey;
+import java.text.Collator;
+
+/**
+ * A visitor name as the visitor table holds it. Names sort the way the default
+ * locale's collator orders them, but through a collation key made once per name, so
+ * re-sorting compares the cached keys rather than running the collator each time.
+ */
+final class CollatedName implements Comparable<CollatedName> {
+  private static final Collator COLLATOR = Collator.getInstance();
+
+  private final String name;
+  private CollationKey key;
+
+  CollatedName(String name) {
+    this.name = name == null ? "" : name;
+  }
+
+  @Override
+  public int compareTo(CollatedName other) {
+    return key().compareTo(other.key());
+  }
+
+  private CollationKey key() {
+    if (key == null) {
+      // the JDK collators synchronize internally
+      key = COLLATOR.getCollationKey(name);
+    }
+    return key;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,367 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Manifest of the visitor day files in {@code src/data}, kept in {@code catalog.txt}.
+ *
+ * Startup, the "Load from File" picker and range queries read the day list from here
+ * instead of listing and sorting the folder each time, which is slow on a network
+ * share with years of files. The model reports every day file it writes; a new day
+ * is entered at once, other entries are recomputed on a low-priority thread shortly
+ * after, and the manifest is replaced with an atomic rename. The folder is listed in
+ * full when there is no readable manifest, when it holds a day file the manifest
+ * does not (a crash before the manifest caught up), or when an admin asks for a
+ * rescan from the dashboard.
+ *
+ * Line layout (pipe separated, sealed with a checksum like journal records):
+ *   name|rows|bytes|modified|minCheckIn|maxCheckIn|openVisits|crc32c
+ * Bytes, modified and crc32c describe the file as stored, compressed or not; the name
+ * is always the plain {@code .txt} one.
+ */
+class DataCatalog {
+  private static final String MANIFEST_NAME = "catalog.txt";
+  private static final String HEADER = "# visitor log catalog v1";
+  private static final String FILE_PREFIX = "visitor_logs_";
+  private static final long REFRESH_DELAY_MILLIS = 1000;
+
+  /** What the catalog knows about one day file. */
+  static final class Entry {
+    private final String fileName;
+    private final int rows;
+    private final long bytes;
+    private final long modified;
+    private final LocalDateTime minCheckIn;
+    private final LocalDateTime maxCheckIn;
+    private final int openVisits;
+    private final String checksum;
+
+    Entry(String fileName, int rows, long bytes, long modified, LocalDateTime minCheckIn,
+          LocalDateTime maxCheckIn, int openVisits, String checksum) {
+      this.fileName = fileName;
+      this.rows = rows;
+      this.bytes = bytes;
+      this.modified = modified;
+      this.minCheckIn = minCheckIn;
+      this.maxCheckIn = maxCheckIn;
+      this.openVisits = openVisits;
+      this.checksum = checksum;
+    }
+
+    String getFileName() {
+      return fileName;
+    }
+
+    LocalDate getDate() {
+      return VisitorJournal.dateFromFileName(fileName);
+    }
+
+    int getRows() {
+      return rows;
+    }
+
+    long getBytes() {
+      return bytes;
+    }
+
+    long getModified() {
+      return modified;
+    }
+
+    LocalDateTime getMinCheckIn() {
+      return minCheckIn;
+    }
+
+    LocalDateTime getMaxCheckIn() {
+      return maxCheckIn;
+    }
+
+    int getOpenVisits() {
+      return openVisits;
+    }
+
+    String getChecksum() {
+      return checksum;
+    }
+  }
+
+  private final File folder;
+  private final File manifest;
+  // keyed by file name, so iteration is in date order; guarded by this
+  private final TreeMap<String, Entry> entries = new TreeMap<>();
+  private final Set<String> dirty = new LinkedHashSet<>();
+  private boolean refreshQueued;
+  private final ScheduledExecutorService executor;
+
+  DataCatalog(File folder) {
+    this.folder = folder;
+    this.manifest = new File(folder, MANIFEST_NAME);
+    executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "visitor-log-catalog");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    });
+    if (!load() || hasUnlistedDays()) {
+      rescan();
+    }
+  }
+
+  // Reading
+
+  /** Day files, newest first. */
+  synchronized List<Entry> days() {
+    return new ArrayList<>(entries.descendingMap().values());
+  }
+
+  /** Day files dated within the range, oldest first; either bound may be null. */
+  synchronized List<Entry> between(LocalDate from, LocalDate to) {
+    List<Entry> days = new ArrayList<>();
+    for (Entry e : entries.values()) {
+      LocalDate date = e.getDate();
+      if (date == null) continue;
+      if (from != null && date.isBefore(from)) continue;
+      if (to != null && date.isAfter(to)) continue;
+      days.add(e);
+    }
+    return days;
+  }
+
+  synchronized Entry get(String fileName) {
+    return entries.get(fileName);
+  }
+
+  File fileFor(Entry entry) {
+    return new File(folder, entry.getFileName());
+  }
+
+  // Updating
+
+  /**
+   * Notes that a day file was written. Its entry is recomputed on the catalog thread
+   * after a short delay, so a burst of commits costs one pass over the file. A day the
+   * catalog does not list yet is measured and saved before this returns, so a crash
+   * cannot leave it out of the manifest.
+   */
+  void changed(File dayFile) {
+    File day = new File(folder, DayFiles.dayName(dayFile.getName()));
+    if (get(day.getName()) == null && DayFiles.exists(day)) {
+      Entry fresh = measure(day);
+      if (fresh != null) {
+        synchronized (this) {
+          entries.put(fresh.getFileName(), fresh);
+        }
+        save();
+        return;
+      }
+    }
+    synchronized (this) {
+      dirty.add(dayFile.getName());
+      if (refreshQueued) return;
+      refreshQueued = true;
+    }
+    executor.schedule(this::refreshDirty, REFRESH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /** Drops a day file that turned out to be gone. */
+  void forget(String fileName) {
+    synchronized (this) {
+      if (entries.remove(fileName) == null) return;
+    }
+    save();
+  }
+
+  /** Recomputes pending entries now; called on exit after the last commit. */
+  void flush() {
+    try {
+      executor.submit(this::refreshDirty).get(5, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      System.err.println("Failed to update visitor log catalog: " + e.getMessage());
+    }
+  }
+
+  /** Lists the folder and rebuilds every entry, keeping the ones whose file is unchanged. */
+  void rescan() {
+    File[] files = folder.listFiles((dir, name) -> isDayFile(name));
+    TreeMap<String, Entry> rebuilt = new TreeMap<>();
+    if (files != null) {
+      for (File listed : files) {
+        String name = DayFiles.dayName(listed.getName());
+        if (rebuilt.containsKey(name)) continue;
+        File day = new File(folder, name);
+        File stored = DayFiles.stored(day);
+        Entry known = get(name);
+        if (known != null && known.getBytes() == stored.length() && known.getModified() == stored.lastModified()) {
+          rebuilt.put(name, known);
+          continue;
+        }
+        Entry fresh = measure(day);
+        if (fresh != null) rebuilt.put(name, fresh);
+      }
+    }
+    synchronized (this) {
+      entries.clear();
+      entries.putAll(rebuilt);
+    }
+    save();
+  }
+
+  /** Runs {@link #rescan} on the catalog thread, then {@code done} on that thread too. */
+  void rescanLater(Runnable done) {
+    executor.execute(() -> {
+      rescan();
+      done.run();
+    });
+  }
+
+  /**
+   * Whether the folder holds a day file the manifest does not list. Renames in the
+   * folder (every manifest save is one) make it newer than the manifest, so that alone
+   * is not enough; only then are the names listed, without opening any file.
+   */
+  private boolean hasUnlistedDays() {
+    if (folder.lastModified() <= manifest.lastModified()) return false;
+    String[] names = folder.list();
+    if (names == null) return false;
+    for (String name : names) {
+      if (!isDayFile(name)) continue;
+      if (get(DayFiles.dayName(name)) == null) {
+        System.err.println("Visitor log catalog does not list " + name + "; rescanning " + folder);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isDayFile(String name) {
+    return name.startsWith(FILE_PREFIX)
+        && (name.endsWith(".txt") || name.endsWith(".txt" + DayFiles.COMPRESSED_SUFFIX));
+  }
+
+  private void refreshDirty() {
+    List<String> names;
+    synchronized (this) {
+      refreshQueued = false;
+      if (dirty.isEmpty()) return;
+      names = new ArrayList<>(dirty);
+      dirty.clear();
+    }
+    for (String name : names) {
+      File f = new File(folder, name);
+      Entry fresh = DayFiles.exists(f) ? measure(f) : null;
+      synchronized (this) {
+        if (fresh == null) {
+          entries.remove(name);
+        } else {
+          entries.put(name, fresh);
+        }
+      }
+    }
+    save();
+  }
+
+  /** Reads a day file once, folding it for the row stats while checksumming its bytes. */
+  private static Entry measure(File f) {
+    File stored = DayFiles.stored(f);
+    long bytes = stored.length();
+    long modified = stored.lastModified();
+    CRC32C crc = new CRC32C();
+    int[] rows = new int[2]; // total, open
+    LocalDateTime[] range = new LocalDateTime[2];
+    try (InputStream in = DayFiles.decoding(stored, new CheckedInputStream(new FileInputStream(stored), crc))) {
+      VisitorJournal.replayRows(in, VisitorJournal.dateFromFileName(f.getName()), (id, text, checkIn, checkOut) -> {
+        rows[0]++;
+        if (checkOut == null) rows[1]++;
+        if (checkIn != null) {
+          if (range[0] == null || checkIn.isBefore(range[0])) range[0] = checkIn;
+          if (range[1] == null || checkIn.isAfter(range[1])) range[1] = checkIn;
+        }
+      });
+    } catch (IOException e) {
+      System.err.println("Failed to catalog " + f.getName() + ": " + e.getMessage());
+      return null;
+    }
+    return new Entry(f.getName(), rows[0], bytes, modified, range[0], range[1], rows[1],
+        String.format("%08x", (int) crc.getValue()));
+  }
+
+  // Manifest
+
+  /** Loads the manifest; false when it is missing or damaged and needs a rescan. */
+  private boolean load() {
+    if (!manifest.isFile()) return false;
+    TreeMap<String, Entry> loaded = new TreeMap<>();
+    CRC32C crc = new CRC32C();
+    try (PipeLineReader reader = new PipeLineReader(new FileInputStream(manifest))) {
+      while (reader.nextLine()) {
+        if (reader.lineLength() == 0 || reader.startsWith('#')) continue;
+        int payload = reader.checksummedLength(crc);
+        if (payload < 0) {
+          System.err.println("Visitor log catalog is damaged; rescanning " + folder);
+          return false;
+        }
+        reader.split(payload);
+        Entry e = new Entry(reader.field(0), (int) reader.fieldAsLong(1), reader.fieldAsLong(2),
+            reader.fieldAsLong(3), reader.fieldAsTimestamp(4), reader.fieldAsTimestamp(5),
+            (int) reader.fieldAsLong(6), reader.field(7));
+        loaded.put(e.getFileName(), e);
+      }
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Failed to read visitor log catalog: " + e.getMessage());
+      return false;
+    }
+    synchronized (this) {
+      entries.putAll(loaded);
+    }
+    return true;
+  }
+
+  private void save() {
+    StringBuilder sb = new StringBuilder(HEADER).append(System.lineSeparator());
+    for (Entry e : days()) {
+      sb.append(PipeLineReader.seal(String.join("|",
+          PipeLineReader.escape(e.getFileName()),
+          Integer.toString(e.getRows()),
+          Long.toString(e.getBytes()),
+          Long.toString(e.getModified()),
+          timestamp(e.getMinCheckIn()),
+          timestamp(e.getMaxCheckIn()),
+          Integer.toString(e.getOpenVisits()),
+          e.getChecksum()))).append(System.lineSeparator());
+    }
+    // saves come from the catalog thread and from rescans; the rename keeps either whole
+    synchronized (manifest) {
+      File temp = new File(manifest.getPath() + ".tmp");
+      try {
+        if (!folder.exists()) folder.mkdirs();
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+          out.write(sb.toString().getBytes());
+          out.getChannel().force(true);
+        }
+        Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        System.err.println("Failed to save visitor log catalog: " + e.getMessage());
+      }
+    }
+  }
+
+  private static String timestamp(LocalDateTime value) {
+    return value == null ? "" : value.toString();
+  }
+}
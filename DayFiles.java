@@ -0,0 +1,121 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Where a visitor day file physically lives.
+ *
+ * A day is always named by its {@code visitor_logs_yyyy-MM-dd.txt} path. Closed days
+ * are stored compressed next to it as {@code .txt.gz} (deflate at its fastest level,
+ * which already shrinks the repeated guard, area and gate text several times over),
+ * and readers get a streaming view of either form through {@link #open}. A compressed
+ * day is inflated back before anything is appended to it.
+ */
+class DayFiles {
+  static final String COMPRESSED_SUFFIX = ".gz";
+  private static final int BUFFER_BYTES = 64 * 1024;
+
+  /** The compressed form of a day file. */
+  static File compressed(File dayFile) {
+    return new File(dayFile.getPath() + COMPRESSED_SUFFIX);
+  }
+
+  /** The day file a listed file belongs to, whether it is the plain or the compressed form. */
+  static String dayName(String fileName) {
+    return fileName.endsWith(COMPRESSED_SUFFIX)
+        ? fileName.substring(0, fileName.length() - COMPRESSED_SUFFIX.length())
+        : fileName;
+  }
+
+  static boolean exists(File dayFile) {
+    return dayFile.isFile() || compressed(dayFile).isFile();
+  }
+
+  static boolean isCompressed(File dayFile) {
+    return !dayFile.isFile() && compressed(dayFile).isFile();
+  }
+
+  /** The file holding the day's bytes right now; the plain path when neither exists. */
+  static File stored(File dayFile) {
+    return isCompressed(dayFile) ? compressed(dayFile) : dayFile;
+  }
+
+  /** Opens the day for reading, decompressing on the fly when it is stored compressed. */
+  static InputStream open(File dayFile) throws IOException {
+    try {
+      return new FileInputStream(dayFile);
+    } catch (FileNotFoundException e) {
+      File gz = compressed(dayFile);
+      if (!gz.isFile()) throw e;
+      return decoding(gz, new FileInputStream(gz));
+    }
+  }
+
+  /** Wraps the raw bytes of {@code stored} so they read as plain day text. */
+  static InputStream decoding(File stored, InputStream raw) throws IOException {
+    return stored.getName().endsWith(COMPRESSED_SUFFIX) ? new GZIPInputStream(raw, BUFFER_BYTES) : raw;
+  }
+
+  /**
+   * Replaces a plain day file with its compressed form. The compressed copy is forced
+   * to disk before the plain file is removed; if the plain file cannot be removed
+   * (another process has it open) the copy is dropped again. Returns false when there
+   * was nothing to compress.
+   */
+  static boolean compress(File dayFile) throws IOException {
+    if (!dayFile.isFile()) return false;
+    File gz = compressed(dayFile);
+    File temp = new File(gz.getPath() + ".tmp");
+    try (InputStream in = new FileInputStream(dayFile);
+         FileOutputStream file = new FileOutputStream(temp);
+         GZIPOutputStream out = new GZIPOutputStream(file, BUFFER_BYTES) {
+           {
+             def.setLevel(Deflater.BEST_SPEED);
+           }
+         }) {
+      in.transferTo(out);
+      out.finish();
+      file.getChannel().force(true);
+    }
+    Files.move(temp.toPath(), gz.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    if (!dayFile.delete()) {
+      Files.deleteIfExists(gz.toPath());
+      throw new IOException("could not remove " + dayFile.getName() + " after compressing it");
+    }
+    return true;
+  }
+
+  /**
+   * Turns a compressed day back into a plain file so records can be appended. The
+   * result always ends with a newline, so a torn last record never swallows the next.
+   */
+  static boolean inflate(File dayFile) throws IOException {
+    if (!isCompressed(dayFile)) return false;
+    File gz = compressed(dayFile);
+    File temp = new File(dayFile.getPath() + ".inflate");
+    try (InputStream in = decoding(gz, new FileInputStream(gz));
+         FileOutputStream out = new FileOutputStream(temp)) {
+      in.transferTo(out);
+      out.getChannel().force(true);
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+      long length = raf.length();
+      if (length > 0) {
+        raf.seek(length - 1);
+        if (raf.read() != '\n') raf.write(System.lineSeparator().getBytes());
+      }
+    }
+    Files.move(temp.toPath(), dayFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    Files.deleteIfExists(gz.toPath());
+    return true;
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * How hard the journal writer pushes committed records to disk.
+ *
+ * Chosen with the {@code visitorlog.durability} system property:
+ * {@code commit} (default), {@code interval:<millis>} or {@code os}.
+ */
+class DurabilityPolicy {
+  static final DurabilityPolicy EVERY_COMMIT = new DurabilityPolicy("fsync per commit", 0);
+  static final DurabilityPolicy OS_BUFFERED = new DurabilityPolicy("OS buffered", -1);
+
+  private final String label;
+  private final long intervalMillis;
+
+  private DurabilityPolicy(String label, long intervalMillis) {
+    this.label = label;
+    this.intervalMillis = intervalMillis;
+  }
+
+  static DurabilityPolicy interval(long millis) {
+    return new DurabilityPolicy("fsync every " + millis + " ms", Math.max(1, millis));
+  }
+
+  /** True when every commit must be forced to disk before the next one starts. */
+  boolean syncsEveryCommit() {
+    return intervalMillis == 0;
+  }
+
+  /** True when commits are forced to disk on a timer. */
+  boolean syncsOnInterval() {
+    return intervalMillis > 0;
+  }
+
+  long getIntervalMillis() {
+    return intervalMillis;
+  }
+
+  String getLabel() {
+    return label;
+  }
+
+  @Override
+  public String toString() {
+    return label;
+  }
+
+  static DurabilityPolicy fromSetting(String value) {
+    if (value == null || value.isBlank() || value.equalsIgnoreCase("commit")) return EVERY_COMMIT;
+    if (value.equalsIgnoreCase("os")) return OS_BUFFERED;
+    if (value.toLowerCase(java.util.Locale.ROOT).startsWith("interval:")) {
+      try {
+        return interval(Long.parseLong(value.substring("interval:".length()).trim()));
+      } catch (NumberFormatException e) {
+        System.err.println("Invalid durability interval '" + value + "', using fsync per commit");
+      }
+    }
+    return EVERY_COMMIT;
+  }
+}
@@ -0,0 +1,267 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Visitor names by how they sound, for searches where the guard typed "Dela Cruz"
+ * for "Delacruz" or "Jose" for "Jos&eacute;".
+ *
+ * Each name is accent-folded and lower-cased and split into words; the words and
+ * every pair of neighbouring words run together ("dela cruz" also gives "delacruz")
+ * are the keys, each with a {@link RowBitmap} of the slots whose name has it. The
+ * distinct keys also sit in a BK-tree by edit distance and under a phonetic code, so
+ * a query word finds the keys within a couple of typos, and the ones that sound the
+ * same, without measuring its distance to every name. A key that only sounds alike
+ * must still be spelled within half its length of the word.
+ *
+ * A name matches when each query word is close to one of its keys, or when the query
+ * run together is; its score is how close, from 1 for exact down to about 0.5. Only
+ * used from the search thread.
+ */
+final class FuzzyNameIndex {
+  // what a key that only sounds like the query word scores at least
+  private static final float PHONETIC_SCORE = 0.6f;
+  private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  /** Slots matching a query, ascending, with each one's score. */
+  static final class Matches {
+    final int[] slots;
+    final float[] scores;
+
+    Matches(int[] slots, float[] scores) {
+      this.slots = slots;
+      this.scores = scores;
+    }
+  }
+
+  /** A BK-tree node: a key, and the subtrees of keys at each distance from it. */
+  private static final class Node {
+    final String key;
+    final Map<Integer, Node> children = new HashMap<>(4);
+
+    Node(String key) {
+      this.key = key;
+    }
+  }
+
+  private final Map<String, RowBitmap> slotsByKey = new HashMap<>();
+  private final Map<String, List<String>> keysBySound = new HashMap<>();
+  // every key ever added since the last clear; keys whose bitmap emptied stay and are skipped
+  private Node root;
+
+  void add(int slot, String name) {
+    for (String key : keys(name)) {
+      RowBitmap slots = slotsByKey.get(key);
+      if (slots == null) {
+        slots = new RowBitmap();
+        slotsByKey.put(key, slots);
+        insert(key);
+      }
+      slots.add(slot);
+    }
+  }
+
+  void remove(int slot, String name) {
+    for (String key : keys(name)) {
+      RowBitmap slots = slotsByKey.get(key);
+      if (slots != null) slots.remove(slot);
+    }
+  }
+
+  void clear() {
+    slotsByKey.clear();
+    keysBySound.clear();
+    root = null;
+  }
+
+  /** Slots whose name is close to the query; empty when the query has no words. */
+  Matches search(String query, int slotCount) {
+    String[] words = words(query);
+    if (words.length == 0) return new Matches(new int[0], new float[0]);
+    float[] wordScores = new float[slotCount];
+    float[] total = new float[slotCount];
+    RowBitmap all = null;
+    for (String word : words) {
+      Arrays.fill(wordScores, 0f);
+      RowBitmap hits = match(word, wordScores);
+      for (int slot : hits.toArray()) total[slot] += wordScores[slot] / words.length;
+      all = all == null ? hits : RowBitmap.and(all, hits);
+    }
+    if (words.length > 1) {
+      // "dela cruz" for a visitor written "Delacruz"
+      Arrays.fill(wordScores, 0f);
+      RowBitmap joined = match(String.join("", words), wordScores);
+      for (int slot : joined.toArray()) {
+        if (!all.contains(slot) || wordScores[slot] > total[slot]) total[slot] = wordScores[slot];
+      }
+      all.or(joined);
+    }
+    int[] slots = all.toArray();
+    float[] scores = new float[slots.length];
+    for (int i = 0; i < slots.length; i++) scores[i] = total[slots[i]];
+    return new Matches(slots, scores);
+  }
+
+  /** Slots with a key close to the word, with the best score of each in {@code scores}. */
+  private RowBitmap match(String word, float[] scores) {
+    Map<String, Float> keys = new HashMap<>();
+    int limit = word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2;
+    within(root, word, limit, keys);
+    String sound = sound(word);
+    // one-letter codes say too little, and codes alone confuse "garsia" with "cruz"
+    List<String> alike = sound.length() < 2 ? null : keysBySound.get(sound);
+    if (alike != null) {
+      for (String key : alike) {
+        int d = distance(word, key);
+        if (d > Math.max(word.length(), key.length()) / 2) continue;
+        keys.merge(key, Math.max(PHONETIC_SCORE, similarity(word, key, d)), Math::max);
+      }
+    }
+    RowBitmap hits = new RowBitmap();
+    for (Map.Entry<String, Float> key : keys.entrySet()) {
+      RowBitmap slots = slotsByKey.get(key.getKey());
+      if (slots == null || slots.isEmpty()) continue;
+      hits.or(slots);
+      float score = key.getValue();
+      for (int slot : slots.toArray()) {
+        if (score > scores[slot]) scores[slot] = score;
+      }
+    }
+    return hits;
+  }
+
+  /** Collects the keys within {@code limit} edits of the word, skipping subtrees that cannot hold any. */
+  private static void within(Node node, String word, int limit, Map<String, Float> into) {
+    while (node != null) {
+      int d = distance(word, node.key);
+      if (d <= limit) into.merge(node.key, similarity(word, node.key, d), Math::max);
+      // by the triangle inequality only children at d - limit .. d + limit can match
+      Node next = null;
+      for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+        int edge = child.getKey();
+        if (edge < d - limit || edge > d + limit) continue;
+        if (next == null) {
+          next = child.getValue();
+        } else {
+          within(child.getValue(), word, limit, into);
+        }
+      }
+      node = next;
+    }
+  }
+
+  private void insert(String key) {
+    keysBySound.computeIfAbsent(sound(key), k -> new ArrayList<>(1)).add(key);
+    if (root == null) {
+      root = new Node(key);
+      return;
+    }
+    Node node = root;
+    while (true) {
+      int d = distance(key, node.key);
+      if (d == 0) return;
+      Node child = node.children.get(d);
+      if (child == null) {
+        node.children.put(d, new Node(key));
+        return;
+      }
+      node = child;
+    }
+  }
+
+  private static float similarity(String a, String b, int distance) {
+    return 1f - (float) distance / Math.max(a.length(), b.length());
+  }
+
+  /** Levenshtein distance, two rows at a time. */
+  static int distance(String a, String b) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) previous[j] = j;
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      char ca = a.charAt(i - 1);
+      for (int j = 1; j <= b.length(); j++) {
+        int substitute = previous[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[b.length()];
+  }
+
+  /** The words of a name, and each neighbouring pair run together. */
+  private static List<String> keys(String name) {
+    String[] words = words(name);
+    List<String> keys = new ArrayList<>(words.length * 2);
+    for (int i = 0; i < words.length; i++) {
+      if (!keys.contains(words[i])) keys.add(words[i]);
+      if (i > 0) {
+        String pair = words[i - 1] + words[i];
+        if (!keys.contains(pair)) keys.add(pair);
+      }
+    }
+    return keys;
+  }
+
+  /** Accent-folded, lower-cased words with at least one letter. */
+  static String[] words(String text) {
+    if (text == null) return new String[0];
+    String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+        .toLowerCase(Locale.ROOT);
+    List<String> words = new ArrayList<>();
+    for (String word : SEPARATORS.split(folded)) {
+      for (int i = 0; i < word.length(); i++) {
+        if (Character.isLetter(word.charAt(i))) {
+          words.add(word);
+          break;
+        }
+      }
+    }
+    return words.toArray(new String[0]);
+  }
+
+  /**
+   * A rough phonetic code in the spirit of Metaphone: spellings that sound alike
+   * ("ph"/"f", "c"/"k"/"q", "z"/"s") share a letter, and vowels after the first
+   * letter, silent letters and doubled letters are dropped.
+   */
+  static String sound(String word) {
+    String w = word
+        .replace("sch", "sk")
+        .replace("tch", "ch")
+        .replace("ph", "f")
+        .replace("ck", "k")
+        .replace("gh", "")
+        .replace("qu", "kw")
+        .replace("dg", "j")
+        .replace("th", "t")
+        .replace("x", "ks");
+    if (w.startsWith("kn") || w.startsWith("gn") || w.startsWith("wr")) w = w.substring(1);
+    StringBuilder code = new StringBuilder(w.length());
+    for (int i = 0; i < w.length(); i++) {
+      char c = w.charAt(i);
+      char next = i + 1 < w.length() ? w.charAt(i + 1) : 0;
+      char mapped = switch (c) {
+        case 'a', 'e', 'i', 'o', 'u', 'y' -> i == 0 ? 'a' : 0;
+        case 'h', 'w' -> i == 0 ? c : 0;
+        case 'c' -> next == 'e' || next == 'i' || next == 'y' ? 's' : next == 'h' ? 'x' : 'k';
+        case 'q' -> 'k';
+        case 'z' -> 's';
+        case 'v' -> 'f';
+        case 'g' -> next == 'e' || next == 'i' || next == 'y' ? 'j' : 'k';
+        default -> c;
+      };
+      if (mapped != 0 && (code.length() == 0 || code.charAt(code.length() - 1) != mapped)) code.append(mapped);
+    }
+    return code.toString();
+  }
+}
@@ -37,6 +37,11 @@ class GuardDashboardPanel extends JPanel {
 
     add(header, BorderLayout.NORTH);
     add(logPanel, BorderLayout.CENTER);
+    JPanel campus = new JPanel(new BorderLayout(0, 6));
+    campus.setBackground(UITheme.LIGHT_BG);
+    campus.add(new OverstayPanel(visitorTableModel.getOverstays()), BorderLayout.NORTH);
+    campus.add(new OccupancyPanel(visitorTableModel.getOccupancy()), BorderLayout.CENTER);
+    add(campus, BorderLayout.SOUTH);
   }
 
   void setActiveGuard(Guard guard) {
@@ -1,7 +1,6 @@
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -114,16 +113,15 @@ class GuardDirectory {
     if (!f.exists()) {
       return;
     }
-    try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-      String line;
-      while ((line = br.readLine()) != null) {
-        if (line.isBlank()) continue;
-        String[] parts = split(line);
-        String name = unescape(partSafe(parts, 0));
-        String post = unescape(partSafe(parts, 1));
-        String shift = unescape(partSafe(parts, 2));
-        String username = unescape(partSafe(parts, 3));
-        String password = unescape(partSafe(parts, 4));
+    try (PipeLineReader reader = new PipeLineReader(new FileInputStream(f))) {
+      while (reader.nextLine()) {
+        reader.split();
+        if (reader.isBlank()) continue;
+        String name = reader.field(0);
+        String post = reader.field(1);
+        String shift = reader.field(2);
+        String username = reader.field(3);
+        String password = reader.field(4);
         guards.add(new Guard(name, post, shift, username, password));
       }
     } catch (IOException e) {
@@ -132,38 +130,6 @@ class GuardDirectory {
   }
 
   private static String escape(String value) {
-    if (value == null) return "";
-    return value.replace("\\", "\\\\").replace("|", "\\|");
-  }
-
-  private static String unescape(String value) {
-    if (value == null) return "";
-    return value.replace("\\|", "|").replace("\\\\", "\\");
-  }
-
-  private static String[] split(String line) {
-    List<String> parts = new ArrayList<>();
-    StringBuilder buf = new StringBuilder();
-    boolean escape = false;
-    for (int i = 0; i < line.length(); i++) {
-      char c = line.charAt(i);
-      if (escape) {
-        buf.append(c);
-        escape = false;
-      } else if (c == '\\') {
-        escape = true;
-      } else if (c == '|') {
-        parts.add(buf.toString());
-        buf.setLength(0);
-      } else {
-        buf.append(c);
-      }
-    }
-    parts.add(buf.toString());
-    return parts.toArray(String[]::new);
-  }
-
-  private static String partSafe(String[] arr, int idx) {
-    return idx < arr.length ? arr[idx] : "";
+    return PipeLineReader.escape(value);
   }
 }
@@ -0,0 +1,75 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Background compaction for the visitor day journals.
+ *
+ * Runs on its own low-priority daemon thread so neither the folding work nor the file
+ * swap happens on the Swing event thread. A compaction is due once a journal has
+ * superseded records and has either grown past {@link #SIZE_THRESHOLD_BYTES} or held
+ * them for longer than {@link #AGE_THRESHOLD_MILLIS}.
+ */
+class JournalCompactor {
+  static final long SIZE_THRESHOLD_BYTES = 256 * 1024;
+  static final long AGE_THRESHOLD_MILLIS = 10 * 60 * 1000;
+  private static final long CHECK_INTERVAL_SECONDS = 30;
+
+  private final ScheduledExecutorService executor;
+  private final AtomicBoolean checkQueued = new AtomicBoolean();
+  // every day journal the model has appended to
+  private final Set<VisitorJournal> watched = new CopyOnWriteArraySet<>();
+  private final Consumer<File> afterCompaction;
+
+  /** {@code afterCompaction} is told about each file rewritten, on the compactor thread. */
+  JournalCompactor(Consumer<File> afterCompaction) {
+    this.afterCompaction = afterCompaction;
+    executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "visitor-log-compactor");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    });
+    // the age threshold needs a clock even when nobody is writing
+    executor.scheduleWithFixedDelay(this::checkWatched, CHECK_INTERVAL_SECONDS, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  /** Adds a journal the model appends to; each day file is compacted on its own. */
+  void watch(VisitorJournal journal) {
+    watched.add(journal);
+  }
+
+  /** Called after an append; queues at most one threshold check at a time. */
+  void journalGrew() {
+    if (checkQueued.compareAndSet(false, true)) {
+      executor.execute(() -> {
+        checkQueued.set(false);
+        checkWatched();
+      });
+    }
+  }
+
+  private void checkWatched() {
+    for (VisitorJournal journal : watched) {
+      check(journal);
+    }
+  }
+
+  private void check(VisitorJournal journal) {
+    if (!journal.isCompactionDue(SIZE_THRESHOLD_BYTES, AGE_THRESHOLD_MILLIS, System.currentTimeMillis())) return;
+    try {
+      if (journal.compact() && afterCompaction != null) {
+        afterCompaction.accept(journal.getFile());
+      }
+    } catch (IOException | RuntimeException e) {
+      // the journal is still intact; try again on the next check
+      System.err.println("Failed to compact visitor log: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,77 @@
+import java.io.File;
+
+/**
+ * What went wrong while replaying a visitor day file.
+ *
+ * Records whose checksum does not match are never applied. A damaged tail (for example
+ * a record torn by a power cut) is cut off the file so later appends start on a clean
+ * line; every damaged record is copied to the quarantine file for inspection.
+ */
+class JournalLoadReport {
+  private final File file;
+  private int corruptRecords;
+  private int malformedRows;
+  private long truncatedBytes;
+  private File quarantineFile;
+
+  JournalLoadReport(File file) {
+    this.file = file;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  int getCorruptRecords() {
+    return corruptRecords;
+  }
+
+  int getMalformedRows() {
+    return malformedRows;
+  }
+
+  long getTruncatedBytes() {
+    return truncatedBytes;
+  }
+
+  File getQuarantineFile() {
+    return quarantineFile;
+  }
+
+  void corruptRecord() {
+    corruptRecords++;
+  }
+
+  void malformedRow() {
+    malformedRows++;
+  }
+
+  void truncated(long bytes) {
+    truncatedBytes += bytes;
+  }
+
+  void quarantinedTo(File quarantine) {
+    quarantineFile = quarantine;
+  }
+
+  boolean hasProblems() {
+    return corruptRecords > 0 || malformedRows > 0;
+  }
+
+  String describe() {
+    StringBuilder sb = new StringBuilder("Problems while loading " + file.getName() + ":");
+    if (corruptRecords > 0) {
+      sb.append("\n- ").append(corruptRecords).append(" record(s) failed their checksum and were not applied");
+    }
+    if (truncatedBytes > 0) {
+      sb.append("\n- a damaged tail of ").append(truncatedBytes).append(" byte(s) was cut from the file");
+    }
+    if (quarantineFile != null) {
+      sb.append("\n- damaged records were copied to ").append(quarantineFile.getPath());
+    }
+    if (malformedRows > 0) {
+      sb.append("\n- ").append(malformedRows).append(" row(s) could not be read and were skipped");
+    }
+    return sb.toString();
+  }
+}
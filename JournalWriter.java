@@ -0,0 +1,303 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Dedicated persistence thread for the visitor journal.
+ *
+ * The table model encodes each mutation on the caller's thread and hands the record to
+ * a bounded queue. This thread drains whatever has queued up, writes it with one append
+ * per journal and forces it to disk according to the {@link DurabilityPolicy}, so a
+ * burst of check-ins costs a single write and a single fsync.
+ */
+class JournalWriter {
+  private static final int QUEUE_CAPACITY = 4096;
+  private static final int MAX_BATCH = 512;
+
+  /** One queued unit of work: an appended record or a flush marker. */
+  private static final class Pending {
+    final VisitorJournal journal;
+    final String record;
+    final boolean supersedes;
+    final Runnable marker;
+    final boolean closes;
+
+    private Pending(VisitorJournal journal, String record, boolean supersedes, Runnable marker, boolean closes) {
+      this.journal = journal;
+      this.record = record;
+      this.supersedes = supersedes;
+      this.marker = marker;
+      this.closes = closes;
+    }
+
+    static Pending record(VisitorJournal journal, String record, boolean supersedes) {
+      return new Pending(journal, record, supersedes, null, false);
+    }
+
+    static Pending marker(Runnable onReached, boolean closes) {
+      return new Pending(null, null, false, onReached, closes);
+    }
+  }
+
+  /** Records for one journal inside a commit. */
+  private static final class Batch {
+    final List<String> records = new ArrayList<>();
+    int superseding;
+  }
+
+  private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final DurabilityPolicy policy;
+  private final Consumer<List<VisitorJournal>> afterCommit;
+  private final Thread thread;
+  private volatile boolean closed;
+
+  // journals written since the last interval fsync; only touched by the writer thread
+  private final List<VisitorJournal> unsynced = new ArrayList<>();
+  // journals written by the current commit
+  private final List<VisitorJournal> committed = new ArrayList<>();
+  private long lastSyncAt = System.currentTimeMillis();
+
+  // metrics, written by the writer thread
+  private volatile long commits;
+  private volatile long recordsWritten;
+  private volatile long lastCommitNanos;
+  private volatile long maxCommitNanos;
+  private volatile long totalCommitNanos;
+
+  /** {@code afterCommit} runs on the writer thread with the journals each commit wrote to. */
+  JournalWriter(DurabilityPolicy policy, Consumer<List<VisitorJournal>> afterCommit) {
+    this.policy = policy == null ? DurabilityPolicy.EVERY_COMMIT : policy;
+    this.afterCommit = afterCommit;
+    thread = new Thread(this::run, "visitor-log-writer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  DurabilityPolicy getPolicy() {
+    return policy;
+  }
+
+  void append(VisitorJournal journal, String record, boolean supersedes) {
+    enqueue(Pending.record(journal, record, supersedes));
+  }
+
+  private void enqueue(Pending pending) {
+    if (closed) {
+      System.err.println("Visitor log writer is closed; record dropped");
+      return;
+    }
+    try {
+      // blocks only when the disk has fallen QUEUE_CAPACITY records behind
+      queue.put(pending);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.err.println("Interrupted while queueing visitor log record");
+    }
+  }
+
+  /** Waits until everything queued so far has been written. */
+  void flush(long timeoutMillis) {
+    if (closed) return;
+    awaitMarker(false, timeoutMillis);
+  }
+
+  /**
+   * Waits until everything queued so far is written and synced, then stops the thread.
+   * Used by the shutdown hook so the last check-ins are not lost on exit.
+   */
+  void flushAndClose(long timeoutMillis) {
+    if (closed) return;
+    closed = true;
+    awaitMarker(true, timeoutMillis);
+  }
+
+  private void awaitMarker(boolean closes, long timeoutMillis) {
+    if (Thread.currentThread() == thread) return;
+    Object done = new Object();
+    boolean[] finished = new boolean[1];
+    Pending marker = Pending.marker(() -> {
+      synchronized (done) {
+        finished[0] = true;
+        done.notifyAll();
+      }
+    }, closes);
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    try {
+      if (!queue.offer(marker, timeoutMillis, TimeUnit.MILLISECONDS)) return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    synchronized (done) {
+      while (!finished[0]) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0 || !thread.isAlive()) break;
+        try {
+          done.wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+  }
+
+  private void run() {
+    List<Pending> drained = new ArrayList<>(MAX_BATCH);
+    while (true) {
+      try {
+        Pending first = queue.poll(pollTimeoutMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+          syncIfDue();
+          continue;
+        }
+        drained.add(first);
+        queue.drainTo(drained, MAX_BATCH - 1);
+        if (commit(drained)) {
+          // records that raced the close marker are still written before stopping
+          while (!queue.isEmpty()) {
+            drained.clear();
+            queue.drainTo(drained, MAX_BATCH);
+            commit(drained);
+          }
+          syncUnsynced();
+          return;
+        }
+      } catch (InterruptedException e) {
+        return;
+      } finally {
+        drained.clear();
+      }
+    }
+  }
+
+  private long pollTimeoutMillis() {
+    if (!policy.syncsOnInterval() || unsynced.isEmpty()) return 1000;
+    long dueIn = lastSyncAt + policy.getIntervalMillis() - System.currentTimeMillis();
+    return Math.max(1, dueIn);
+  }
+
+  /** Writes one drained burst; returns true when a close marker was reached. */
+  private boolean commit(List<Pending> drained) {
+    long start = System.nanoTime();
+    boolean sawClose = false;
+    List<Runnable> markers = new ArrayList<>();
+    int written = 0;
+    Map<VisitorJournal, Batch> batches = new LinkedHashMap<>();
+    for (Pending p : drained) {
+      if (p.marker != null) {
+        // flush and close markers: everything queued before them is written first
+        written += flushBatches(batches);
+        if (p.closes) {
+          syncUnsynced();
+          sawClose = true;
+        }
+        markers.add(p.marker);
+        continue;
+      }
+      Batch batch = batches.computeIfAbsent(p.journal, j -> new Batch());
+      batch.records.add(p.record);
+      if (p.supersedes) batch.superseding++;
+    }
+    written += flushBatches(batches);
+    syncIfDue();
+    recordCommit(System.nanoTime() - start, written);
+    if (afterCommit != null && written > 0) {
+      afterCommit.accept(new ArrayList<>(committed));
+    }
+    committed.clear();
+    markers.forEach(Runnable::run);
+    return sawClose;
+  }
+
+  private int flushBatches(Map<VisitorJournal, Batch> batches) {
+    int written = 0;
+    for (Map.Entry<VisitorJournal, Batch> e : batches.entrySet()) {
+      Batch batch = e.getValue();
+      try {
+        e.getKey().commit(batch.records, batch.superseding, policy.syncsEveryCommit());
+        written += batch.records.size();
+        noteWritten(e.getKey());
+      } catch (IOException ex) {
+        System.err.println("Failed to append visitor log records: " + ex.getMessage());
+      }
+    }
+    batches.clear();
+    return written;
+  }
+
+  private void noteWritten(VisitorJournal journal) {
+    if (!committed.contains(journal)) {
+      committed.add(journal);
+    }
+    if (policy.syncsOnInterval() && !unsynced.contains(journal)) {
+      unsynced.add(journal);
+    }
+  }
+
+  private void syncIfDue() {
+    if (!policy.syncsOnInterval() || unsynced.isEmpty()) return;
+    if (System.currentTimeMillis() - lastSyncAt < policy.getIntervalMillis()) return;
+    syncUnsynced();
+  }
+
+  private void syncUnsynced() {
+    for (VisitorJournal journal : unsynced) {
+      try {
+        journal.sync();
+      } catch (IOException e) {
+        System.err.println("Failed to sync visitor log: " + e.getMessage());
+      }
+    }
+    unsynced.clear();
+    lastSyncAt = System.currentTimeMillis();
+  }
+
+  private void recordCommit(long nanos, int records) {
+    if (records == 0) return;
+    commits++;
+    recordsWritten += records;
+    lastCommitNanos = nanos;
+    totalCommitNanos += nanos;
+    if (nanos > maxCommitNanos) maxCommitNanos = nanos;
+  }
+
+  // Metrics
+
+  int getQueueDepth() {
+    return queue.size();
+  }
+
+  long getCommitCount() {
+    return commits;
+  }
+
+  long getRecordsWritten() {
+    return recordsWritten;
+  }
+
+  double getLastCommitMillis() {
+    return lastCommitNanos / 1_000_000.0;
+  }
+
+  double getMaxCommitMillis() {
+    return maxCommitNanos / 1_000_000.0;
+  }
+
+  double getAverageCommitMillis() {
+    long c = commits;
+    return c == 0 ? 0 : totalCommitNanos / (double) c / 1_000_000.0;
+  }
+
+  String describeStats() {
+    return String.format("Log writer (%s): queue %d | %d commits, %d records | commit last %.2f ms, avg %.2f ms, max %.2f ms",
+        policy.getLabel(), getQueueDepth(), getCommitCount(), getRecordsWritten(),
+        getLastCommitMillis(), getAverageCommitMillis(), getMaxCommitMillis());
+  }
+}
@@ -0,0 +1,87 @@
+import java.awt.BorderLayout;
+import java.awt.GridLayout;
+import java.util.Map;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Live strip showing who is on campus: the total, then the busiest gates, campus
+ * areas and guards. Redrawn from the {@link OccupancyTracker} counters at most once
+ * per burst of changes, never by looking at the rows.
+ */
+class OccupancyPanel extends JPanel {
+  // places listed per column before the rest are summed up
+  private static final int SHOWN_PER_COLUMN = 5;
+
+  private final OccupancyTracker tracker;
+  private final JLabel totalLabel = new JLabel();
+  private final JLabel gatesLabel = new JLabel();
+  private final JLabel areasLabel = new JLabel();
+  private final JLabel guardsLabel = new JLabel();
+  private boolean refreshQueued;
+
+  OccupancyPanel(OccupancyTracker tracker) {
+    this.tracker = tracker;
+    setLayout(new BorderLayout(16, 0));
+    setBackground(UITheme.PANEL_BG);
+    setBorder(BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(UITheme.BORDER),
+        BorderFactory.createEmptyBorder(8, 12, 8, 12)));
+
+    totalLabel.setFont(UITheme.SECTION_FONT);
+    totalLabel.setForeground(UITheme.PRIMARY);
+    add(totalLabel, BorderLayout.WEST);
+
+    JPanel columns = new JPanel(new GridLayout(1, 3, 16, 0));
+    columns.setOpaque(false);
+    for (JLabel label : new JLabel[] {gatesLabel, areasLabel, guardsLabel}) {
+      label.setFont(UITheme.BODY_FONT.deriveFont(12f));
+      label.setVerticalAlignment(JLabel.TOP);
+      columns.add(label);
+    }
+    add(columns, BorderLayout.CENTER);
+
+    tracker.addChangeListener(this::queueRefresh);
+    refresh();
+  }
+
+  private void queueRefresh() {
+    // a reload reports once, but a range of edits would otherwise redraw per row
+    if (refreshQueued) return;
+    refreshQueued = true;
+    SwingUtilities.invokeLater(() -> {
+      refreshQueued = false;
+      refresh();
+    });
+  }
+
+  private void refresh() {
+    totalLabel.setText("On campus now: " + tracker.getOnCampus());
+    gatesLabel.setText(column("By gate", tracker.getByGate()));
+    areasLabel.setText(column("By campus area", tracker.getByArea()));
+    guardsLabel.setText(column("By guard", tracker.getByGuard()));
+  }
+
+  private static String column(String title, Map<String, Integer> counts) {
+    StringBuilder html = new StringBuilder("<html><b>").append(title).append("</b>");
+    int shown = 0;
+    int rest = 0;
+    for (Map.Entry<String, Integer> e : counts.entrySet()) {
+      if (shown < SHOWN_PER_COLUMN) {
+        html.append("<br>").append(escape(e.getKey())).append(": ").append(e.getValue());
+        shown++;
+      } else {
+        rest += e.getValue();
+      }
+    }
+    if (counts.isEmpty()) html.append("<br>-");
+    if (rest > 0) html.append("<br>others: ").append(rest);
+    return html.append("</html>").toString();
+  }
+
+  private static String escape(String text) {
+    return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+  }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How many visitors are on campus right now, in total and per gate, campus area and
+ * guard on duty.
+ *
+ * The table model reports every visit it adds, edits, checks out or removes, and the
+ * counts move by one for each; only loading the live view recounts its rows. An open
+ * visit is remembered by record id with the gate, area and guard it was counted
+ * under, so an edit that moves it, or a check-out, takes it off the right counters
+ * even when it is reported from a past day's view. Event thread only.
+ */
+class OccupancyTracker {
+  static final String UNASSIGNED = "(unassigned)";
+
+  /** Where one open visit is counted. */
+  private static final class Place {
+    final String gate;
+    final String area;
+    final String guard;
+
+    Place(Visitor v) {
+      gate = label(v.getGateEntered());
+      area = label(v.getCampusArea());
+      guard = label(v.getGuardLabel());
+    }
+
+    private static String label(String value) {
+      return value == null || value.isBlank() ? UNASSIGNED : value;
+    }
+  }
+
+  private final Map<Long, Place> open = new HashMap<>();
+  private final Map<String, Integer> byGate = new HashMap<>();
+  private final Map<String, Integer> byArea = new HashMap<>();
+  private final Map<String, Integer> byGuard = new HashMap<>();
+  private final List<Runnable> listeners = new ArrayList<>();
+
+  /** Counts the visit as it is now: on campus until it has a check-out time. */
+  void visitorChanged(Visitor v) {
+    boolean changed = uncount(v.getRecordId());
+    if (v.getCheckOut() == null) {
+      Place place = new Place(v);
+      open.put(v.getRecordId(), place);
+      count(place, 1);
+      changed = true;
+    }
+    if (changed) fireChanged();
+  }
+
+  void visitorRemoved(Visitor v) {
+    if (uncount(v.getRecordId())) fireChanged();
+  }
+
+  /** Recounts from the rows of the live view. */
+  void reset(List<Visitor> visitors) {
+    open.clear();
+    byGate.clear();
+    byArea.clear();
+    byGuard.clear();
+    for (Visitor v : visitors) {
+      if (v.getCheckOut() != null) continue;
+      Place place = new Place(v);
+      if (open.put(v.getRecordId(), place) == null) count(place, 1);
+    }
+    fireChanged();
+  }
+
+  int getOnCampus() {
+    return open.size();
+  }
+
+  /** Open visits per gate, most first. */
+  Map<String, Integer> getByGate() {
+    return ranked(byGate);
+  }
+
+  /** Open visits per campus area, most first. */
+  Map<String, Integer> getByArea() {
+    return ranked(byArea);
+  }
+
+  /** Open visits per guard on duty, most first. */
+  Map<String, Integer> getByGuard() {
+    return ranked(byGuard);
+  }
+
+  /** Told after every change to the counts. */
+  void addChangeListener(Runnable listener) {
+    listeners.add(listener);
+  }
+
+  private boolean uncount(long recordId) {
+    Place old = open.remove(recordId);
+    if (old == null) return false;
+    count(old, -1);
+    return true;
+  }
+
+  private void count(Place place, int delta) {
+    bump(byGate, place.gate, delta);
+    bump(byArea, place.area, delta);
+    bump(byGuard, place.guard, delta);
+  }
+
+  private static void bump(Map<String, Integer> counts, String key, int delta) {
+    // drop keys that reach zero so the panel only lists places with someone in them
+    counts.compute(key, (k, n) -> n == null ? delta : n + delta == 0 ? null : n + delta);
+  }
+
+  private static Map<String, Integer> ranked(Map<String, Integer> counts) {
+    List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+    entries.sort((a, b) -> a.getValue().equals(b.getValue())
+        ? a.getKey().compareTo(b.getKey())
+        : Integer.compare(b.getValue(), a.getValue()));
+    Map<String, Integer> result = new LinkedHashMap<>();
+    for (Map.Entry<String, Integer> e : entries) result.put(e.getKey(), e.getValue());
+    return result;
+  }
+
+  private void fireChanged() {
+    for (Runnable listener : listeners) listener.run();
+  }
+}
@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The open visits by the ID the visitor presented and by contact number, so a guard
+ * can check someone out by scanning or typing either instead of finding the row.
+ *
+ * IDs are compared upper-cased with spaces and punctuation dropped ("abc-123 4" is
+ * "ABC1234"); contact numbers by their last ten digits, so "+63 917 555 0101" and
+ * "09175550101" are the same number. The table model reports visits the same way it
+ * does to the {@link OccupancyTracker}. Event thread only.
+ */
+class OpenVisitIndex {
+  private static final int CONTACT_DIGITS = 10;
+
+  /** The keys one open visit is filed under. */
+  private static final class Keys {
+    final String id;
+    final String contact;
+
+    Keys(Visitor v) {
+      id = idKey(v.getPresentedId());
+      contact = contactKey(v.getContactNumber());
+    }
+  }
+
+  private final Map<Long, Keys> open = new HashMap<>();
+  // usually one visit per key; a second is someone who never checked out last time
+  private final Map<String, List<Visitor>> byId = new HashMap<>();
+  private final Map<String, List<Visitor>> byContact = new HashMap<>();
+
+  /** Files the visit as it is now: findable until it has a check-out time. */
+  void visitorChanged(Visitor v) {
+    unfile(v.getRecordId());
+    if (v.getCheckOut() == null) file(v);
+  }
+
+  void visitorRemoved(Visitor v) {
+    unfile(v.getRecordId());
+  }
+
+  /** Files the open visits of the live view instead of whatever was filed before. */
+  void reset(List<Visitor> visitors) {
+    open.clear();
+    byId.clear();
+    byContact.clear();
+    for (Visitor v : visitors) {
+      if (v.getCheckOut() == null && !open.containsKey(v.getRecordId())) file(v);
+    }
+  }
+
+  /**
+   * Open visits whose presented ID matches what was scanned or typed, or failing that
+   * whose contact number does; oldest check-in first, empty when none.
+   */
+  List<Visitor> find(String presented) {
+    List<Visitor> found = byId.get(idKey(presented));
+    if (found == null) found = byContact.get(contactKey(presented));
+    return found == null ? List.of() : new ArrayList<>(found);
+  }
+
+  int size() {
+    return open.size();
+  }
+
+  private void file(Visitor v) {
+    Keys keys = new Keys(v);
+    open.put(v.getRecordId(), keys);
+    if (keys.id != null) insert(byId, keys.id, v);
+    if (keys.contact != null) insert(byContact, keys.contact, v);
+  }
+
+  private void unfile(long recordId) {
+    Keys keys = open.remove(recordId);
+    if (keys == null) return;
+    if (keys.id != null) delete(byId, keys.id, recordId);
+    if (keys.contact != null) delete(byContact, keys.contact, recordId);
+  }
+
+  private static void insert(Map<String, List<Visitor>> map, String key, Visitor v) {
+    List<Visitor> visits = map.computeIfAbsent(key, k -> new ArrayList<>(1));
+    int at = visits.size();
+    while (at > 0 && isBefore(v, visits.get(at - 1))) at--;
+    visits.add(at, v);
+  }
+
+  private static boolean isBefore(Visitor a, Visitor b) {
+    return a.getCheckIn() != null && b.getCheckIn() != null && a.getCheckIn().isBefore(b.getCheckIn());
+  }
+
+  private static void delete(Map<String, List<Visitor>> map, String key, long recordId) {
+    List<Visitor> visits = map.get(key);
+    if (visits == null) return;
+    visits.removeIf(v -> v.getRecordId() == recordId);
+    if (visits.isEmpty()) map.remove(key);
+  }
+
+  /** Upper-cased letters and digits, or null when there are none. */
+  static String idKey(String value) {
+    if (value == null) return null;
+    StringBuilder key = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (Character.isLetterOrDigit(c)) key.append(c);
+    }
+    return key.length() == 0 ? null : key.toString().toUpperCase(Locale.ROOT);
+  }
+
+  /** The last ten digits, or all of them when there are fewer; null without any. */
+  static String contactKey(String value) {
+    if (value == null) return null;
+    StringBuilder digits = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') digits.append(c);
+    }
+    if (digits.length() == 0) return null;
+    return digits.length() > CONTACT_DIGITS ? digits.substring(digits.length() - CONTACT_DIGITS) : digits.toString();
+  }
+}
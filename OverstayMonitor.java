@@ -0,0 +1,228 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Raises an alert the moment an open visit runs past the time its campus area allows.
+ *
+ * Each open visit gets a deadline, its check-in plus the area's limit, and waits in a
+ * hashed timer wheel: {@link #WHEEL_SLOTS} buckets of {@link #TICK_MILLIS} each,
+ * spanning a day, with a visit in the bucket its deadline falls in. Every tick looks
+ * at one bucket and fires the visits in it that are due, so the work per tick is the
+ * handful of visits due about then, not the whole list; one whose deadline is more
+ * than a day out stays in its bucket for another turn. A check-out, edit or removal
+ * unlinks the visit from its bucket directly.
+ *
+ * The table model reports visits the same way it does to the {@link OccupancyTracker}.
+ * Limits are read from {@code overstay_limits.txt} in the data folder, one
+ * {@code area|minutes} line per campus area and {@code *|minutes} for the rest; without
+ * it every area allows {@link #DEFAULT_LIMIT_MINUTES}. Event thread only.
+ */
+class OverstayMonitor {
+  static final long TICK_MILLIS = 30_000;
+  static final int WHEEL_SLOTS = 2880;
+  static final long DEFAULT_LIMIT_MINUTES = 8 * 60;
+
+  /** One open visit waiting for its deadline; linked into its bucket. */
+  private static final class Timeout {
+    final Visitor visitor;
+    final long deadlineTick;
+    Timeout previous;
+    Timeout next;
+    int bucket;
+
+    Timeout(Visitor visitor, long deadlineTick) {
+      this.visitor = visitor;
+      this.deadlineTick = deadlineTick;
+    }
+  }
+
+  private final Timeout[] buckets = new Timeout[WHEEL_SLOTS];
+  private final Map<Long, Timeout> waiting = new HashMap<>();
+  // visits past their limit and still open, by record id, in the order they went over
+  private final Map<Long, Visitor> overdue = new LinkedHashMap<>();
+  private final Map<String, Long> limitMinutes = new HashMap<>();
+  private long defaultLimitMinutes = DEFAULT_LIMIT_MINUTES;
+  private final List<Consumer<Visitor>> alertListeners = new ArrayList<>();
+  private final List<Runnable> changeListeners = new ArrayList<>();
+  private long currentTick;
+
+  OverstayMonitor(File limitsFile) {
+    loadLimits(limitsFile);
+    currentTick = tickOf(System.currentTimeMillis());
+  }
+
+  /** Starts ticking on the event thread. */
+  void start() {
+    new javax.swing.Timer((int) TICK_MILLIS, e -> advanceTo(System.currentTimeMillis())).start();
+  }
+
+  /** Schedules or drops the visit as it is now: watched until it has a check-out time. */
+  void visitorChanged(Visitor v) {
+    boolean wasOverdue = overdue.containsKey(v.getRecordId());
+    boolean changed = cancel(v.getRecordId());
+    if (v.getCheckOut() == null && v.getCheckIn() != null) {
+      long deadline = tickOf(deadlineOf(v));
+      if (deadline > currentTick) {
+        schedule(new Timeout(v, deadline));
+      } else if (wasOverdue) {
+        // an edit to a visit already over its limit is not a new alert
+        overdue.put(v.getRecordId(), v);
+      } else {
+        goOverdue(v);
+      }
+      changed = true;
+    }
+    if (changed) fireChanged();
+  }
+
+  void visitorRemoved(Visitor v) {
+    if (cancel(v.getRecordId())) fireChanged();
+  }
+
+  /** Watches the open visits of the live view instead of whatever was watched before. */
+  void reset(List<Visitor> visitors) {
+    java.util.Arrays.fill(buckets, null);
+    waiting.clear();
+    overdue.clear();
+    for (Visitor v : visitors) {
+      if (v.getCheckOut() != null || v.getCheckIn() == null) continue;
+      long deadline = tickOf(deadlineOf(v));
+      if (deadline <= currentTick) {
+        // already over when the day was opened; listed, but not alerted again
+        overdue.put(v.getRecordId(), v);
+      } else {
+        schedule(new Timeout(v, deadline));
+      }
+    }
+    fireChanged();
+  }
+
+  /** Runs every tick up to the given time, firing the visits that came due. */
+  void advanceTo(long nowMillis) {
+    long target = tickOf(nowMillis);
+    while (currentTick < target) {
+      currentTick++;
+      int slot = (int) Math.floorMod(currentTick, (long) WHEEL_SLOTS);
+      Timeout t = buckets[slot];
+      while (t != null) {
+        Timeout next = t.next;
+        if (t.deadlineTick <= currentTick) {
+          unlink(t);
+          waiting.remove(t.visitor.getRecordId());
+          goOverdue(t.visitor);
+          fireChanged();
+        }
+        t = next;
+      }
+    }
+  }
+
+  /** Open visits past their limit, in the order they went over. */
+  List<Visitor> getOverdue() {
+    return new ArrayList<>(overdue.values());
+  }
+
+  /** Visits being watched that are not over yet. */
+  int getWaitingCount() {
+    return waiting.size();
+  }
+
+  /** How long the visit is allowed, by its campus area. */
+  Duration limitFor(Visitor v) {
+    String area = v.getCampusArea() == null ? "" : v.getCampusArea().toLowerCase(Locale.ROOT);
+    return Duration.ofMinutes(limitMinutes.getOrDefault(area, defaultLimitMinutes));
+  }
+
+  /** Told once for each visit when it goes over its limit. */
+  void addAlertListener(Consumer<Visitor> listener) {
+    alertListeners.add(listener);
+  }
+
+  /** Told whenever the overdue list or the watched visits change. */
+  void addChangeListener(Runnable listener) {
+    changeListeners.add(listener);
+  }
+
+  private long deadlineOf(Visitor v) {
+    LocalDateTime due = v.getCheckIn().plus(limitFor(v));
+    return due.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private static long tickOf(long millis) {
+    // a deadline inside a tick fires at the end of it, never before
+    return Math.floorDiv(millis + TICK_MILLIS - 1, TICK_MILLIS);
+  }
+
+  private void goOverdue(Visitor v) {
+    overdue.put(v.getRecordId(), v);
+    for (Consumer<Visitor> listener : alertListeners) listener.accept(v);
+  }
+
+  private boolean cancel(long recordId) {
+    Timeout t = waiting.remove(recordId);
+    if (t != null) unlink(t);
+    return t != null | overdue.remove(recordId) != null;
+  }
+
+  private void schedule(Timeout t) {
+    waiting.put(t.visitor.getRecordId(), t);
+    t.bucket = (int) Math.floorMod(t.deadlineTick, (long) WHEEL_SLOTS);
+    t.next = buckets[t.bucket];
+    if (t.next != null) t.next.previous = t;
+    buckets[t.bucket] = t;
+  }
+
+  private void unlink(Timeout t) {
+    if (t.previous != null) {
+      t.previous.next = t.next;
+    } else {
+      buckets[t.bucket] = t.next;
+    }
+    if (t.next != null) t.next.previous = t.previous;
+    t.previous = null;
+    t.next = null;
+  }
+
+  private void loadLimits(File f) {
+    if (!f.exists()) {
+      return;
+    }
+    try (PipeLineReader reader = new PipeLineReader(new FileInputStream(f))) {
+      while (reader.nextLine()) {
+        if (reader.lineLength() == 0 || reader.startsWith('#')) continue;
+        reader.split();
+        if (reader.isBlank()) continue;
+        String area = reader.field(0).trim();
+        long minutes;
+        try {
+          minutes = Long.parseLong(reader.field(1).trim());
+        } catch (NumberFormatException e) {
+          System.err.println("Ignoring overstay limit on line " + reader.lineNumber() + ": " + e.getMessage());
+          continue;
+        }
+        if (area.equals("*")) {
+          defaultLimitMinutes = minutes;
+        } else {
+          limitMinutes.put(area.toLowerCase(Locale.ROOT), minutes);
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to load overstay limits: " + e.getMessage());
+    }
+  }
+
+  private void fireChanged() {
+    for (Runnable listener : changeListeners) listener.run();
+  }
+}
@@ -0,0 +1,83 @@
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Toolkit;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Overstay alerts from the {@link OverstayMonitor}: how many open visits are past their
+ * area's limit and the ones that went over most recently. Beeps when a visit goes over.
+ */
+class OverstayPanel extends JPanel {
+  // most recent overstays listed by name
+  private static final int SHOWN = 5;
+  private static final Color ALERT = new Color(0xB00020);
+
+  private final OverstayMonitor monitor;
+  private final JLabel countLabel = new JLabel();
+  private final JLabel listLabel = new JLabel();
+  private boolean refreshQueued;
+
+  OverstayPanel(OverstayMonitor monitor) {
+    this.monitor = monitor;
+    setLayout(new BorderLayout(16, 0));
+    setBackground(UITheme.PANEL_BG);
+    setBorder(BorderFactory.createCompoundBorder(
+        BorderFactory.createLineBorder(UITheme.BORDER),
+        BorderFactory.createEmptyBorder(8, 12, 8, 12)));
+    countLabel.setFont(UITheme.SECTION_FONT);
+    listLabel.setFont(UITheme.BODY_FONT.deriveFont(12f));
+    add(countLabel, BorderLayout.WEST);
+    add(listLabel, BorderLayout.CENTER);
+
+    monitor.addAlertListener(v -> Toolkit.getDefaultToolkit().beep());
+    monitor.addChangeListener(this::queueRefresh);
+    // the minutes over keep growing between alerts
+    new javax.swing.Timer(60_000, e -> refresh()).start();
+    refresh();
+  }
+
+  private void queueRefresh() {
+    if (refreshQueued) return;
+    refreshQueued = true;
+    SwingUtilities.invokeLater(() -> {
+      refreshQueued = false;
+      refresh();
+    });
+  }
+
+  private void refresh() {
+    List<Visitor> overdue = monitor.getOverdue();
+    countLabel.setText("Overstays: " + overdue.size());
+    countLabel.setForeground(overdue.isEmpty() ? UITheme.PRIMARY_DARK : ALERT);
+    if (overdue.isEmpty()) {
+      listLabel.setText("No open visit is past its time limit.");
+      return;
+    }
+    LocalDateTime now = LocalDateTime.now();
+    StringBuilder html = new StringBuilder("<html>");
+    for (int i = overdue.size() - 1, shown = 0; i >= 0 && shown < SHOWN; i--, shown++) {
+      Visitor v = overdue.get(i);
+      long over = Duration.between(v.getCheckIn().plus(monitor.limitFor(v)), now).toMinutes();
+      if (shown > 0) html.append("<br>");
+      html.append(escape(v.getVisitorName())).append(" - ").append(escape(v.getCampusArea()))
+          .append(", in since ").append(v.getCheckInTime())
+          .append(", ").append(formatMinutes(Math.max(0, over))).append(" over");
+    }
+    if (overdue.size() > SHOWN) html.append("<br>and ").append(overdue.size() - SHOWN).append(" more");
+    listLabel.setText(html.append("</html>").toString());
+  }
+
+  private static String formatMinutes(long minutes) {
+    return minutes < 60 ? minutes + " min" : (minutes / 60) + " h " + (minutes % 60) + " min";
+  }
+
+  private static String escape(String text) {
+    return text == null ? "" : text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+  }
+}
@@ -0,0 +1,351 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Streaming reader for the pipe-separated save files (visitor logs, guards, admins).
+ *
+ * Lines are read as raw bytes into a reused buffer, decoded once into a reused char
+ * array, and split on unescaped {@code |} while escapes are decoded in the same pass.
+ * Field values only become Strings when asked for, and timestamps and ids are parsed
+ * straight from the char array, so reading a long file allocates little beyond the
+ * values that are actually kept.
+ *
+ * Escapes: {@code \|} pipe, {@code \\} backslash, {@code \n} and {@code \r} line breaks.
+ * Lines may be sealed with {@code |*} plus the CRC32C of the preceding bytes.
+ */
+class PipeLineReader implements Closeable {
+  /** {@link #checksummedLength} result for a line that carries no checksum. */
+  static final int UNSEALED = -1;
+  /** {@link #checksummedLength} result for a line whose checksum does not match. */
+  static final int DAMAGED = -2;
+
+  private static final String CHECKSUM_MARK = "|*";
+  private static final int CHECKSUM_LENGTH = 8;
+
+  private final InputStream in;
+  private final byte[] readBuffer = new byte[64 * 1024];
+  private int readPos;
+  private int readLimit;
+
+  private byte[] line = new byte[256];
+  private int lineLength;          // without the trailing \r
+  private int rawLength;           // as read, before \r is dropped
+  private boolean terminated;
+  private long lineStart;
+  private long nextLineStart;
+  private int lineNumber;
+
+  private final CharsetDecoder decoder;
+  private char[] chars = new char[256];
+  private int[] fieldStart = new int[16];
+  private int[] fieldEnd = new int[16];
+  private int fieldCount;
+
+  PipeLineReader(InputStream in) {
+    this(in, Charset.defaultCharset());
+  }
+
+  PipeLineReader(InputStream in, Charset charset) {
+    this.in = in;
+    this.decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  // Lines
+
+  /** Reads the next line's raw bytes; returns false at end of input. */
+  boolean nextLine() throws IOException {
+    fieldCount = 0;
+    int len = 0;
+    boolean sawNewline = false;
+    while (true) {
+      if (readPos == readLimit) {
+        readLimit = in.read(readBuffer, 0, readBuffer.length);
+        readPos = 0;
+        if (readLimit <= 0) {
+          readLimit = 0;
+          break;
+        }
+      }
+      // copy up to the next newline in one go
+      int start = readPos;
+      int i = start;
+      while (i < readLimit && readBuffer[i] != '\n') i++;
+      int n = i - start;
+      if (len + n > line.length) line = Arrays.copyOf(line, Math.max(line.length * 2, len + n));
+      System.arraycopy(readBuffer, start, line, len, n);
+      len += n;
+      readPos = i;
+      if (i < readLimit) {
+        readPos++;
+        sawNewline = true;
+        break;
+      }
+    }
+    if (!sawNewline && len == 0) return false;
+    lineStart = nextLineStart;
+    nextLineStart += len + (sawNewline ? 1 : 0);
+    rawLength = len;
+    lineLength = len > 0 && line[len - 1] == '\r' ? len - 1 : len;
+    terminated = sawNewline;
+    lineNumber++;
+    return true;
+  }
+
+  int lineNumber() {
+    return lineNumber;
+  }
+
+  /** Byte offset of the current line in the input. */
+  long lineStart() {
+    return lineStart;
+  }
+
+  boolean lineTerminated() {
+    return terminated;
+  }
+
+  /** Length of the current line in bytes, without its line terminator. */
+  int lineLength() {
+    return lineLength;
+  }
+
+  boolean startsWith(char c) {
+    return lineLength > 0 && line[0] == (byte) c;
+  }
+
+  /** Whether the raw line starts with the given ASCII text. */
+  boolean startsWith(String prefix) {
+    if (lineLength < prefix.length()) return false;
+    for (int i = 0; i < prefix.length(); i++) {
+      if (line[i] != (byte) prefix.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  /** Copies the current line, without its terminator, followed by a newline. */
+  void copyLineTo(ByteArrayOutputStream out) {
+    out.write(line, 0, lineLength);
+    out.write('\n');
+  }
+
+  /**
+   * Returns the byte length of the line before its {@code |*} checksum when the
+   * checksum matches, {@link #UNSEALED} when it has none, or {@link #DAMAGED}.
+   * Works on the raw bytes, so nothing is decoded for damaged lines.
+   */
+  int checksummedLength(CRC32C crc) {
+    int mark = lineLength - CHECKSUM_LENGTH - 2;
+    if (mark < 0 || line[mark] != '|' || line[mark + 1] != '*') return UNSEALED;
+    // the separator must not itself be escaped
+    int slashes = 0;
+    for (int i = mark - 1; i >= 0 && line[i] == '\\'; i--) slashes++;
+    if (slashes % 2 != 0) return UNSEALED;
+    int expected = 0;
+    for (int i = mark + 2; i < lineLength; i++) {
+      int digit = Character.digit(line[i], 16);
+      if (digit < 0) return UNSEALED;
+      expected = (expected << 4) | digit;
+    }
+    crc.reset();
+    crc.update(line, 0, mark);
+    return (int) crc.getValue() == expected ? mark : DAMAGED;
+  }
+
+  // Fields
+
+  /** Splits the whole current line into fields. */
+  void split() {
+    split(lineLength);
+  }
+
+  /** Decodes the first {@code byteLength} bytes of the line and splits them into fields. */
+  void split(int byteLength) {
+    int charCount = decode(byteLength);
+    // split and unescape in place: w never overtakes r
+    fieldCount = 0;
+    int w = 0;
+    int start = 0;
+    boolean escape = false;
+    for (int r = 0; r < charCount; r++) {
+      char c = chars[r];
+      if (escape) {
+        chars[w++] = c == 'n' ? '\n' : c == 'r' ? '\r' : c;
+        escape = false;
+      } else if (c == '\\') {
+        escape = true;
+      } else if (c == '|') {
+        addField(start, w);
+        start = w;
+      } else {
+        chars[w++] = c;
+      }
+    }
+    addField(start, w);
+  }
+
+  private int decode(int byteLength) {
+    boolean ascii = true;
+    for (int i = 0; i < byteLength; i++) {
+      if (line[i] < 0) {
+        ascii = false;
+        break;
+      }
+    }
+    if (chars.length < byteLength) chars = new char[Math.max(chars.length * 2, byteLength)];
+    if (ascii) {
+      for (int i = 0; i < byteLength; i++) chars[i] = (char) line[i];
+      return byteLength;
+    }
+    decoder.reset();
+    ByteBuffer src = ByteBuffer.wrap(line, 0, byteLength);
+    CharBuffer dst = CharBuffer.wrap(chars);
+    CoderResult result = decoder.decode(src, dst, true);
+    if (result.isOverflow()) {
+      // a byte never decodes to more than one char with the charsets we write in
+      chars = new char[byteLength * 2];
+      return decode(byteLength);
+    }
+    decoder.flush(dst);
+    return dst.position();
+  }
+
+  private void addField(int start, int end) {
+    if (fieldCount == fieldStart.length) {
+      fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+      fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+    }
+    fieldStart[fieldCount] = start;
+    fieldEnd[fieldCount] = end;
+    fieldCount++;
+  }
+
+  int fieldCount() {
+    return fieldCount;
+  }
+
+  /** True when the split line has no visible characters. */
+  boolean isBlank() {
+    for (int f = 0; f < fieldCount; f++) {
+      for (int i = fieldStart[f]; i < fieldEnd[f]; i++) {
+        if (!Character.isWhitespace(chars[i])) return false;
+      }
+    }
+    return fieldCount <= 1;
+  }
+
+  /** The decoded field, or "" when the line has fewer fields. */
+  String field(int index) {
+    if (index >= fieldCount) return "";
+    return new String(chars, fieldStart[index], fieldEnd[index] - fieldStart[index]);
+  }
+
+  boolean fieldEquals(int index, String value) {
+    if (index >= fieldCount) return value.isEmpty();
+    int start = fieldStart[index];
+    int len = fieldEnd[index] - start;
+    if (len != value.length()) return false;
+    for (int i = 0; i < len; i++) {
+      if (chars[start + i] != value.charAt(i)) return false;
+    }
+    return true;
+  }
+
+  boolean fieldIsEmpty(int index) {
+    return index >= fieldCount || fieldEnd[index] == fieldStart[index];
+  }
+
+  long fieldAsLong(int index) {
+    if (fieldIsEmpty(index)) throw new NumberFormatException("missing number in field " + index);
+    int start = fieldStart[index];
+    int end = fieldEnd[index];
+    boolean negative = chars[start] == '-';
+    int i = negative ? start + 1 : start;
+    if (i == end || end - i > 18) return Long.parseLong(field(index));
+    long value = 0;
+    for (; i < end; i++) {
+      int digit = chars[i] - '0';
+      if (digit < 0 || digit > 9) throw new NumberFormatException("not a number: " + field(index));
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses an ISO local date-time as written by {@link LocalDateTime#toString()}
+   * ({@code yyyy-MM-ddTHH:mm[:ss[.fraction]]}) without going through the formatter.
+   * Anything else falls back to {@link LocalDateTime#parse}. Empty fields are null.
+   */
+  LocalDateTime fieldAsTimestamp(int index) {
+    if (fieldIsEmpty(index)) return null;
+    int s = fieldStart[index];
+    int len = fieldEnd[index] - s;
+    char[] c = chars;
+    if (len >= 16 && c[s + 4] == '-' && c[s + 7] == '-' && c[s + 10] == 'T' && c[s + 13] == ':') {
+      int year = digits(c, s, 4);
+      int month = digits(c, s + 5, 2);
+      int day = digits(c, s + 8, 2);
+      int hour = digits(c, s + 11, 2);
+      int minute = digits(c, s + 14, 2);
+      int second = 0;
+      int nanos = 0;
+      boolean ok = (year | month | day | hour | minute) >= 0;
+      if (ok && len > 16) {
+        ok = len >= 19 && c[s + 16] == ':' && (second = digits(c, s + 17, 2)) >= 0;
+        if (ok && len > 19) {
+          int fraction = len - 20;
+          ok = c[s + 19] == '.' && fraction >= 1 && fraction <= 9 && (nanos = digits(c, s + 20, fraction)) >= 0;
+          for (int k = fraction; ok && k < 9; k++) nanos *= 10;
+        }
+      }
+      if (ok) {
+        return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+      }
+    }
+    return LocalDateTime.parse(field(index));
+  }
+
+  /** Parses {@code count} ASCII digits, or returns -1. */
+  private static int digits(char[] c, int start, int count) {
+    int value = 0;
+    for (int i = start; i < start + count; i++) {
+      int d = c[i] - '0';
+      if (d < 0 || d > 9) return -1;
+      value = value * 10 + d;
+    }
+    return value;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  // Writing side of the same format
+
+  /** Escapes a value for one field of a pipe-separated line. */
+  static String escape(String value) {
+    if (value == null) return "";
+    return value.replace("\\", "\\\\").replace("|", "\\|").replace("\n", "\\n").replace("\r", "\\r");
+  }
+
+  /** Appends the CRC32C of the line's bytes so damaged lines can be detected on read. */
+  static String seal(String line) {
+    byte[] bytes = line.getBytes();
+    CRC32C crc = new CRC32C();
+    crc.update(bytes, 0, bytes.length);
+    return line + CHECKSUM_MARK + String.format("%08x", (int) crc.getValue());
+  }
+}
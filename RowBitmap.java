@@ -0,0 +1,283 @@
+import java.util.Arrays;
+
+/**
+ * Compressed set of table row numbers, split into chunks of 65536 rows the way
+ * roaring bitmaps are. A chunk with few rows keeps them as a sorted char array; once
+ * it passes {@link #ARRAY_LIMIT} rows it switches to a plain 65536-bit word array.
+ * A campus area used by a handful of visits costs a few bytes, a gate used by most
+ * of them costs 8 KB per chunk, and AND/OR work a chunk at a time.
+ */
+final class RowBitmap {
+  static final int ARRAY_LIMIT = 4096;
+  private static final int WORDS = 1024;
+
+  /** The rows of one 65536-row chunk, as a sorted array or as bits. */
+  private static final class Chunk {
+    char[] array;
+    long[] bits;
+    int cardinality;
+
+    static Chunk empty() {
+      Chunk c = new Chunk();
+      c.array = new char[4];
+      return c;
+    }
+
+    boolean contains(char low) {
+      if (bits != null) return (bits[low >>> 6] & (1L << low)) != 0;
+      return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+    }
+
+    void add(char low) {
+      if (bits != null) {
+        long mask = 1L << low;
+        if ((bits[low >>> 6] & mask) == 0) {
+          bits[low >>> 6] |= mask;
+          cardinality++;
+        }
+        return;
+      }
+      int at = cardinality > 0 && array[cardinality - 1] < low
+          ? -cardinality - 1
+          : Arrays.binarySearch(array, 0, cardinality, low);
+      if (at >= 0) return;
+      at = -at - 1;
+      if (cardinality == ARRAY_LIMIT) {
+        toBits();
+        add(low);
+        return;
+      }
+      if (cardinality == array.length) array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, cardinality * 2));
+      System.arraycopy(array, at, array, at + 1, cardinality - at);
+      array[at] = low;
+      cardinality++;
+    }
+
+    void remove(char low) {
+      if (bits != null) {
+        long mask = 1L << low;
+        if ((bits[low >>> 6] & mask) != 0) {
+          bits[low >>> 6] &= ~mask;
+          cardinality--;
+          if (cardinality <= ARRAY_LIMIT / 2) toArray();
+        }
+        return;
+      }
+      int at = Arrays.binarySearch(array, 0, cardinality, low);
+      if (at < 0) return;
+      System.arraycopy(array, at + 1, array, at, cardinality - at - 1);
+      cardinality--;
+    }
+
+    private void toBits() {
+      bits = new long[WORDS];
+      for (int i = 0; i < cardinality; i++) bits[array[i] >>> 6] |= 1L << array[i];
+      array = null;
+    }
+
+    private void toArray() {
+      char[] a = new char[Math.max(4, cardinality)];
+      int n = 0;
+      for (int w = 0; w < WORDS; w++) {
+        long word = bits[w];
+        while (word != 0) {
+          a[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      array = a;
+      bits = null;
+    }
+
+    /** Writes the rows of this chunk, offset by {@code high}, into {@code out}. */
+    int copyTo(int high, int[] out, int at) {
+      if (bits == null) {
+        for (int i = 0; i < cardinality; i++) out[at++] = high | array[i];
+        return at;
+      }
+      for (int w = 0; w < WORDS; w++) {
+        long word = bits[w];
+        while (word != 0) {
+          out[at++] = high | ((w << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return at;
+    }
+
+    static Chunk and(Chunk a, Chunk b) {
+      Chunk c = new Chunk();
+      if (a.bits != null && b.bits != null) {
+        c.bits = new long[WORDS];
+        for (int w = 0; w < WORDS; w++) {
+          c.bits[w] = a.bits[w] & b.bits[w];
+          c.cardinality += Long.bitCount(c.bits[w]);
+        }
+        if (c.cardinality <= ARRAY_LIMIT) c.toArray();
+        return c;
+      }
+      // at least one side is an array; probe the other side with its rows
+      Chunk small = a.bits == null ? a : b;
+      Chunk other = small == a ? b : a;
+      c.array = new char[Math.max(4, small.cardinality)];
+      for (int i = 0; i < small.cardinality; i++) {
+        if (other.contains(small.array[i])) c.array[c.cardinality++] = small.array[i];
+      }
+      return c;
+    }
+
+    void or(Chunk other) {
+      if (other.bits != null || cardinality + other.cardinality > ARRAY_LIMIT) {
+        if (bits == null) toBits();
+        if (other.bits != null) {
+          cardinality = 0;
+          for (int w = 0; w < WORDS; w++) {
+            bits[w] |= other.bits[w];
+            cardinality += Long.bitCount(bits[w]);
+          }
+        } else {
+          for (int i = 0; i < other.cardinality; i++) add(other.array[i]);
+        }
+        return;
+      }
+      for (int i = 0; i < other.cardinality; i++) add(other.array[i]);
+    }
+
+    Chunk copy() {
+      Chunk c = new Chunk();
+      c.array = array == null ? null : array.clone();
+      c.bits = bits == null ? null : bits.clone();
+      c.cardinality = cardinality;
+      return c;
+    }
+  }
+
+  // chunk keys (row >>> 16) in ascending order, with their chunks
+  private char[] keys = new char[0];
+  private Chunk[] chunks = new Chunk[0];
+  private int size;
+
+  /** A bitmap holding the given rows, which must be sorted ascending. */
+  static RowBitmap of(int[] sortedRows) {
+    RowBitmap bitmap = new RowBitmap();
+    for (int row : sortedRows) bitmap.add(row);
+    return bitmap;
+  }
+
+  boolean contains(int row) {
+    int at = find((char) (row >>> 16));
+    return at >= 0 && chunks[at].contains((char) row);
+  }
+
+  void add(int row) {
+    char high = (char) (row >>> 16);
+    int at = find(high);
+    if (at < 0) at = insertChunk(-at - 1, high, Chunk.empty());
+    chunks[at].add((char) row);
+  }
+
+  void remove(int row) {
+    int at = find((char) (row >>> 16));
+    if (at < 0) return;
+    chunks[at].remove((char) row);
+    if (chunks[at].cardinality == 0) {
+      System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+      System.arraycopy(chunks, at + 1, chunks, at, size - at - 1);
+      size--;
+      chunks[size] = null;
+    }
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int cardinality() {
+    int n = 0;
+    for (int i = 0; i < size; i++) n += chunks[i].cardinality;
+    return n;
+  }
+
+  /** How many chunks are held as bits rather than as a sorted array. */
+  int bitsChunks() {
+    int n = 0;
+    for (int i = 0; i < size; i++) {
+      if (chunks[i].bits != null) n++;
+    }
+    return n;
+  }
+
+  /** The rows in ascending order. */
+  int[] toArray() {
+    int[] out = new int[cardinality()];
+    int at = 0;
+    for (int i = 0; i < size; i++) at = chunks[i].copyTo(keys[i] << 16, out, at);
+    return out;
+  }
+
+  /** Rows in both bitmaps. */
+  static RowBitmap and(RowBitmap a, RowBitmap b) {
+    RowBitmap result = new RowBitmap();
+    result.keys = new char[Math.min(a.size, b.size)];
+    result.chunks = new Chunk[result.keys.length];
+    int i = 0;
+    int j = 0;
+    while (i < a.size && j < b.size) {
+      if (a.keys[i] < b.keys[j]) {
+        i++;
+      } else if (a.keys[i] > b.keys[j]) {
+        j++;
+      } else {
+        Chunk c = Chunk.and(a.chunks[i], b.chunks[j]);
+        if (c.cardinality > 0) {
+          result.keys[result.size] = a.keys[i];
+          result.chunks[result.size++] = c;
+        }
+        i++;
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /** Adds every row of {@code other} to this bitmap. */
+  void or(RowBitmap other) {
+    for (int j = 0; j < other.size; j++) {
+      int at = find(other.keys[j]);
+      if (at >= 0) {
+        chunks[at].or(other.chunks[j]);
+      } else {
+        insertChunk(-at - 1, other.keys[j], other.chunks[j].copy());
+      }
+    }
+  }
+
+  private int insertChunk(int at, char high, Chunk chunk) {
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+      chunks = Arrays.copyOf(chunks, Math.max(4, size * 2));
+    }
+    System.arraycopy(keys, at, keys, at + 1, size - at);
+    System.arraycopy(chunks, at, chunks, at + 1, size - at);
+    keys[at] = high;
+    chunks[at] = chunk;
+    size++;
+    return at;
+  }
+
+  private int find(char high) {
+    int lo = 0;
+    int hi = size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (keys[mid] < high) {
+        lo = mid + 1;
+      } else if (keys[mid] > high) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -lo - 1;
+  }
+}
@@ -0,0 +1,67 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/** Checks how a day file is repaired when it is replayed after a crash. */
+public class TestJournalRecovery {
+  private static int failures;
+
+  public static void main(String[] args) throws Exception {
+    Path dir = Files.createTempDirectory("journal-recovery");
+    Guard guard = new GuardDirectory().getGuards().get(0);
+
+    String first = PipeLineReader.seal("@A|1|Jane Doe|555-0001|UB-1|Meeting|Main Campus|G1|Gate 1|2026-03-14T08:00|");
+    String second = PipeLineReader.seal("@A|2|John Roe|555-0002|UB-2|Delivery|Main Campus|G1|Gate 1|2026-03-14T09:00|");
+    String third = PipeLineReader.seal("@A|3|Ann Poe|555-0003|UB-3|Visit|Main Campus|G1|Gate 1|2026-03-14T10:00|");
+
+    // a record cut off mid-write is dropped and cut from the file
+    File torn = day(dir, "torn", first + "\n" + second + "\n" + "@A|3|Ann Po");
+    JournalLoadReport report = new JournalLoadReport(torn);
+    List<Visitor> visitors = VisitorJournal.replay(torn, label -> guard, report);
+    check(visitors.size() == 2, "torn tail: the two whole records survive");
+    check(Files.readString(torn.toPath()).equals(first + "\n" + second + "\n"), "torn tail: the file is truncated after the last whole record");
+    check(report.getTruncatedBytes() == "@A|3|Ann Po".length(), "torn tail: the cut bytes are reported");
+
+    // a damaged record with good ones after it is skipped and quarantined, the file kept
+    String damaged = second.replace("John", "Joan");
+    String content = first + "\n" + damaged + "\n" + third + "\n";
+    File middle = day(dir, "middle", content);
+    report = new JournalLoadReport(middle);
+    visitors = VisitorJournal.replay(middle, label -> guard, report);
+    check(visitors.size() == 2 && visitors.get(1).getVisitorName().equals("Ann Poe"), "bad record: the records around it survive");
+    check(report.getCorruptRecords() == 1, "bad record: it is counted");
+    check(Files.readString(middle.toPath()).equals(content), "bad record: the file is left as it was");
+    check(report.getQuarantineFile() != null && Files.readString(report.getQuarantineFile().toPath()).contains(damaged),
+        "bad record: it is copied to the quarantine file");
+
+    // an intact last record that lost its newline gets one back
+    File unterminated = day(dir, "unterminated", first + "\n" + second);
+    visitors = VisitorJournal.replay(unterminated, label -> guard);
+    check(visitors.size() == 2, "unterminated tail: the last record is kept");
+    check(Files.readString(unterminated.toPath()).equals(first + "\n" + second + System.lineSeparator()),
+        "unterminated tail: a line separator is appended");
+
+    // a row in the old format whose name starts with '@' is not a torn record
+    String legacy = "@lice|555-0004|UB-4|Visit|Main Campus|G1|Gate 1|2026-03-14T11:00|";
+    File old = day(dir, "legacy", legacy + "\n" + first + "\n");
+    visitors = VisitorJournal.replay(old, label -> guard);
+    check(visitors.size() == 2 && visitors.get(0).getVisitorName().equals("@lice"), "legacy row: a name starting with '@' is loaded");
+    check(Files.readString(old.toPath()).equals(legacy + "\n" + first + "\n"), "legacy row: the file is left as it was");
+
+    System.out.println(failures == 0 ? "All journal recovery checks passed" : failures + " check(s) failed");
+    if (failures > 0) System.exit(1);
+  }
+
+  private static File day(Path dir, String name, String content) throws Exception {
+    Path folder = Files.createDirectories(dir.resolve(name));
+    File f = folder.resolve("visitor_logs_2026-03-14.txt").toFile();
+    Files.writeString(f.toPath(), content);
+    return f;
+  }
+
+  private static void check(boolean ok, String what) {
+    System.out.println((ok ? "ok   " : "FAIL ") + what);
+    if (!ok) failures++;
+  }
+}
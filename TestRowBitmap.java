@@ -0,0 +1,66 @@
+import java.util.Arrays;
+
+/** Checks that a row bitmap switches between arrays and bits without losing rows. */
+public class TestRowBitmap {
+  private static int failures;
+
+  public static void main(String[] args) {
+    int limit = RowBitmap.ARRAY_LIMIT;
+
+    // every third row of the first chunk, up to the limit: still an array
+    RowBitmap bitmap = new RowBitmap();
+    for (int i = 0; i < limit; i++) bitmap.add(i * 3);
+    check(bitmap.cardinality() == limit && bitmap.bitsChunks() == 0, "at the limit the chunk is an array");
+    bitmap.add(3);
+    check(bitmap.cardinality() == limit && bitmap.bitsChunks() == 0, "adding a row already there changes nothing");
+
+    bitmap.add(1);
+    check(bitmap.cardinality() == limit + 1 && bitmap.bitsChunks() == 1, "one row past the limit the chunk turns into bits");
+    check(bitmap.contains(1) && bitmap.contains(0) && bitmap.contains((limit - 1) * 3) && !bitmap.contains(2),
+        "the rows survive the switch to bits");
+    int[] expected = new int[limit + 1];
+    expected[0] = 0;
+    expected[1] = 1;
+    for (int i = 1; i < limit; i++) expected[i + 1] = i * 3;
+    check(Arrays.equals(bitmap.toArray(), expected), "bits list the rows in ascending order");
+
+    // back down to half the limit: an array again
+    bitmap.remove(1);
+    for (int i = limit - 1; i > limit / 2; i--) bitmap.remove(i * 3);
+    check(bitmap.cardinality() == limit / 2 + 1 && bitmap.bitsChunks() == 1, "above half the limit the chunk stays bits");
+    bitmap.remove((limit / 2) * 3);
+    check(bitmap.cardinality() == limit / 2 && bitmap.bitsChunks() == 0, "at half the limit the chunk turns back into an array");
+    check(bitmap.contains(0) && bitmap.contains((limit / 2 - 1) * 3) && !bitmap.contains((limit / 2) * 3),
+        "the rows survive the switch back");
+
+    // rows in a second chunk are kept apart from the first
+    bitmap.add(65536 + 7);
+    check(bitmap.contains(65536 + 7) && !bitmap.contains(7), "a row in the next chunk is its own chunk");
+
+    // AND of two bits chunks that shares few rows comes out as an array
+    RowBitmap evens = new RowBitmap();
+    RowBitmap odds = new RowBitmap();
+    for (int i = 0; i < 2 * limit; i++) {
+      evens.add(i * 2);
+      odds.add(i * 2 + 1);
+    }
+    odds.add(10);
+    RowBitmap both = RowBitmap.and(evens, odds);
+    check(both.cardinality() == 1 && both.contains(10) && both.bitsChunks() == 0, "a small AND of two bits chunks is an array");
+    check(RowBitmap.and(evens, bitmap).cardinality() == limit / 4, "AND of bits and an array keeps the shared rows");
+
+    // OR past the limit turns the receiving array into bits
+    RowBitmap merged = new RowBitmap();
+    merged.add(1);
+    merged.or(evens);
+    check(merged.cardinality() == 2 * limit + 1 && merged.bitsChunks() == 1 && merged.contains(1), "OR into an array can turn it into bits");
+
+    System.out.println(failures == 0 ? "All row bitmap checks passed" : failures + " check(s) failed");
+    if (failures > 0) System.exit(1);
+  }
+
+  private static void check(boolean ok, String what) {
+    System.out.println((ok ? "ok   " : "FAIL ") + what);
+    if (!ok) failures++;
+  }
+}
@@ -0,0 +1,87 @@
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/** Checks how advanced search queries are parsed: precedence, time bounds and errors. */
+public class TestVisitorQuery {
+  private static int failures;
+
+  public static void main(String[] args) {
+    // AND, spelled out or as a space, binds tighter than OR; NOT tighter than both
+    same("a OR b c", "(\"a\" OR (\"b\" AND \"c\"))", "a space binds tighter than OR");
+    same("a OR b AND c", "(\"a\" OR (\"b\" AND \"c\"))", "AND binds tighter than OR");
+    same("NOT a b", "(NOT \"a\" AND \"b\")", "NOT takes only the next term");
+    same("-a OR b", "(NOT \"a\" OR \"b\")", "a leading '-' is NOT");
+    same("(a OR b) c", "((\"a\" OR \"b\") AND \"c\")", "parentheses group an OR");
+    same("name:Jane gate=\"Gate A\"", "(name:\"jane\" AND gate=\"gate a\")", "fields, quotes and case");
+    same("a or b", "(\"a\" AND \"or\" AND \"b\")", "keywords must be upper case");
+
+    String[] row = {"jane doe", "555-0001", "ub-1", "meeting", "main campus", "g1", "gate a", "", ""};
+    check(VisitorQuery.parse("jane -gate:b").test(row, VisitorQuery.NO_TIME, VisitorQuery.NO_TIME), "a row matches the tree");
+
+    // times of day are [from, until) in seconds into the day, to the minute
+    long eight = 8 * 3600;
+    bounds("checkin>=08:00", eight, 86400);
+    bounds("checkin>08:00", eight + 60, 86400);
+    bounds("checkin<08:00", 0, eight);
+    bounds("checkin<=08:00", 0, eight + 60);
+    bounds("checkin:8am", eight, eight + 60);
+    bounds("checkin=8:30pm", 20 * 3600 + 1800, 20 * 3600 + 1860);
+    bounds("checkin:12am", 0, 60);
+
+    // dates are whole days
+    long day = LocalDate.parse("2026-03-14").atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    bounds("checkout:2026-03-14", day, day + 86400);
+    bounds("checkout>2026-03-14", day + 86400, Long.MAX_VALUE);
+    bounds("checkout<2026-03-14", Long.MIN_VALUE + 1, day);
+    bounds("checkout<=2026-03-14", Long.MIN_VALUE + 1, day + 86400);
+
+    VisitorQuery open = VisitorQuery.parse("checkout:none");
+    check(open.test(row, day, VisitorQuery.NO_TIME) && !open.test(row, day, day + 60), "checkout:none is a missing time");
+    VisitorQuery any = VisitorQuery.parse("checkout:any");
+    check(!any.test(row, day, VisitorQuery.NO_TIME) && any.test(row, day, day + 60), "checkout:any is a present time");
+    VisitorQuery morning = VisitorQuery.parse("checkin>=08:00 checkin<12:00");
+    check(morning.test(row, day + eight, VisitorQuery.NO_TIME) && !morning.test(row, day + 12 * 3600, VisitorQuery.NO_TIME),
+        "a time of day matches on any date");
+
+    rejected("checkin>none", "none cannot be compared");
+    rejected("checkin:8", "an hour alone is not a time");
+    rejected("checkin:13pm", "13pm is not a time");
+    rejected("checkin:24:00", "24:00 is not a time");
+    rejected("checkin:yesterday", "an unknown date");
+    rejected("name>a", "text fields only take ':' and '='");
+    rejected("colour:red", "an unknown field");
+    rejected("(a OR b", "a missing ')'");
+    rejected("a )", "a stray ')'");
+    rejected("name:\"jane", "a missing closing quote");
+    rejected("a AND", "a query ending after AND");
+
+    System.out.println(failures == 0 ? "All visitor query checks passed" : failures + " check(s) failed");
+    if (failures > 0) System.exit(1);
+  }
+
+  private static void same(String query, String tree, String what) {
+    String parsed = VisitorQuery.parse(query).toString();
+    check(parsed.equals(tree), what + " (" + query + " -> " + parsed + ")");
+  }
+
+  private static void bounds(String query, long from, long until) {
+    VisitorQuery.Node root = VisitorQuery.parse(query).getRoot();
+    boolean ok = root instanceof VisitorQuery.Time
+        && ((VisitorQuery.Time) root).from == from && ((VisitorQuery.Time) root).until == until;
+    check(ok, query + " is [" + from + ", " + until + ") (" + root + ")");
+  }
+
+  private static void rejected(String query, String what) {
+    try {
+      VisitorQuery.parse(query);
+      check(false, what + " (" + query + " was accepted)");
+    } catch (IllegalArgumentException e) {
+      check(true, what + " (" + e.getMessage() + ")");
+    }
+  }
+
+  private static void check(boolean ok, String what) {
+    System.out.println((ok ? "ok   " : "FAIL ") + what);
+    if (!ok) failures++;
+  }
+}
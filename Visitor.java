@@ -1,9 +1,7 @@
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 class Visitor {
-  private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("hh:mm a");
-
   private String visitorName;
   private String contactNumber;
   private String presentedId;
@@ -12,6 +10,13 @@ class Visitor {
   private Guard guard;
   private final LocalDateTime checkIn;
   private LocalDateTime checkOut;
+  private long recordId;
+  // day file holding this visitor's records
+  private LocalDate logDate;
+  // table cell values, made on first use and dropped when the field changes
+  private CollatedName nameCell;
+  private VisitTime checkInCell;
+  private VisitTime checkOutCell;
 
   private Visitor(String visitorName,
                   String contactNumber,
@@ -41,6 +46,22 @@ class Visitor {
     );
   }
 
+  long getRecordId() {
+    return recordId;
+  }
+
+  void assignRecordId(long recordId) {
+    this.recordId = recordId;
+  }
+
+  LocalDate getLogDate() {
+    return logDate;
+  }
+
+  void assignLogDate(LocalDate logDate) {
+    this.logDate = logDate;
+  }
+
   String getPresentedId() {
     return presentedId;
   }
@@ -82,11 +103,34 @@ class Visitor {
   }
   
   String getCheckInTime() {
-    return checkIn == null ? "" : checkIn.format(TIME_FORMATTER);
+    return checkIn == null ? "" : getCheckInCell().toString();
   }
   
   String getCheckOutTime() {
-    return checkOut == null ? "" : checkOut.format(TIME_FORMATTER);
+    return checkOut == null ? "" : getCheckOutCell().toString();
+  }
+
+  CollatedName getNameCell() {
+    if (nameCell == null) {
+      nameCell = new CollatedName(visitorName);
+    }
+    return nameCell;
+  }
+
+  /** Null when there is no check-in time. */
+  VisitTime getCheckInCell() {
+    if (checkInCell == null && checkIn != null) {
+      checkInCell = new VisitTime(checkIn);
+    }
+    return checkInCell;
+  }
+
+  /** Null while the visit is open. */
+  VisitTime getCheckOutCell() {
+    if (checkOutCell == null && checkOut != null) {
+      checkOutCell = new VisitTime(checkOut);
+    }
+    return checkOutCell;
   }
 
   static Visitor fromCsvFields(String visitorName,
@@ -107,14 +151,22 @@ class Visitor {
       return false;
     }
     checkOut = checkoutTime;
+    checkOutCell = null;
     return true;
   }
 
+  // used when replaying a saved check-out record
+  void restoreCheckout(LocalDateTime checkoutTime) {
+    checkOut = checkoutTime;
+    checkOutCell = null;
+  }
+
   void updateDetails(VisitorFormData data) {
     if (data == null) {
       return;
     }
     this.visitorName = data.getVisitorName();
+    this.nameCell = null;
     this.contactNumber = data.getContactNumber();
     this.presentedId = data.getPresentedId();
     this.purpose = data.getPurpose();
@@ -0,0 +1,404 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Columnar, read-only copy of a closed visitor day, kept next to the text file as
+ * {@code visitor_logs_yyyy-MM-dd.vla}.
+ *
+ * The text journal stays the source of truth; an archive is only used while the
+ * source length and modification time stamped in its header still match the day
+ * file as stored (compressed or not). Opening an
+ * archive maps the file instead of reading it, and columns are read in place.
+ *
+ * Layout (big-endian):
+ *   header     magic, version, rows, reserved, source length, source modified, file length
+ *   ids        long[rows]
+ *   check-in   long[rows] epoch seconds, int[rows] nanos
+ *   check-out  long[rows] epoch seconds ({@link #NO_TIME} while open), int[rows] nanos
+ *   codes      int[rows] each for campus area, guard and gate
+ *   text       one heap each for name, contact, presented id and purpose
+ *   dictionary one heap each for campus area, guard and gate
+ * A heap is {@code int count}, {@code int[count + 1]} byte offsets, then the UTF-8 bytes.
+ * Times are local wall-clock times stored as if they were UTC.
+ */
+class VisitorArchive {
+  static final String EXTENSION = ".vla";
+
+  private static final int MAGIC = 0x564C4131; // "VLA1"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 40;
+  private static final long NO_TIME = Long.MIN_VALUE;
+
+  // text columns, in heap order
+  private static final int NAME = 0;
+  private static final int CONTACT = 1;
+  private static final int PRESENTED_ID = 2;
+  private static final int PURPOSE = 3;
+  private static final int TEXT_COLUMNS = 4;
+  // dictionary-encoded columns, in code order
+  private static final int CAMPUS = 0;
+  private static final int GUARD = 1;
+  private static final int GATE = 2;
+  private static final int CODED_COLUMNS = 3;
+
+  private final ByteBuffer data;
+  private final int rows;
+  private final int idsAt;
+  private final int checkInAt;
+  private final int checkInNanosAt;
+  private final int checkOutAt;
+  private final int checkOutNanosAt;
+  private final int[] codesAt = new int[CODED_COLUMNS];
+  // start of each text heap
+  private final int[] textAt = new int[TEXT_COLUMNS];
+  private final String[][] dictionaries = new String[CODED_COLUMNS][];
+
+  private VisitorArchive(ByteBuffer data) {
+    this.data = data;
+    if (data.limit() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+      throw new IllegalStateException("not a visitor archive");
+    }
+    if (data.getInt(4) != VERSION) {
+      throw new IllegalStateException("unsupported archive version " + data.getInt(4));
+    }
+    if (data.getLong(32) != data.limit()) {
+      throw new IllegalStateException("archive is truncated");
+    }
+    rows = data.getInt(8);
+    long at = HEADER_BYTES;
+    idsAt = (int) at;
+    at += rows * 8L;
+    checkInAt = (int) at;
+    at += rows * 8L;
+    checkInNanosAt = (int) at;
+    at += rows * 4L;
+    checkOutAt = (int) at;
+    at += rows * 8L;
+    checkOutNanosAt = (int) at;
+    at += rows * 4L;
+    for (int c = 0; c < CODED_COLUMNS; c++) {
+      codesAt[c] = (int) at;
+      at += rows * 4L;
+    }
+    for (int t = 0; t < TEXT_COLUMNS; t++) {
+      textAt[t] = checkedHeap(at, rows);
+      at = heapEnd(textAt[t]);
+    }
+    for (int c = 0; c < CODED_COLUMNS; c++) {
+      int heap = checkedHeap(at, -1);
+      at = heapEnd(heap);
+      // dictionaries are small, so they are decoded once
+      dictionaries[c] = new String[data.getInt(heap)];
+      for (int i = 0; i < dictionaries[c].length; i++) {
+        dictionaries[c][i] = heapString(heap, i);
+      }
+    }
+    if (at != data.limit()) {
+      throw new IllegalStateException("archive layout does not match its length");
+    }
+  }
+
+  // Reading
+
+  /** The archive file kept for a visitor day file. */
+  static File archiveFor(File dayFile) {
+    String name = dayFile.getName();
+    int dot = name.lastIndexOf('.');
+    return new File(dayFile.getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + EXTENSION);
+  }
+
+  /** True when the day is over, so its file only changes through late corrections. */
+  static boolean isClosedDay(File dayFile) {
+    LocalDate date = VisitorJournal.dateFromFileName(dayFile.getName());
+    return date != null && date.isBefore(LocalDate.now());
+  }
+
+  /** True when an archive exists and was built from the day file as it is now. */
+  static boolean isFresh(File dayFile) {
+    File archive = archiveFor(dayFile);
+    File stored = DayFiles.stored(dayFile);
+    if (!archive.isFile() || !stored.isFile()) return false;
+    try (RandomAccessFile in = new RandomAccessFile(archive, "r")) {
+      if (in.length() < HEADER_BYTES || in.readInt() != MAGIC || in.readInt() != VERSION) return false;
+      in.seek(16);
+      return in.readLong() == stored.length() && in.readLong() == stored.lastModified();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /** Maps an archive file. The mapping stays valid after the channel is closed. */
+  static VisitorArchive open(File archive) throws IOException {
+    try (FileChannel channel = FileChannel.open(archive.toPath())) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("archive too large to map: " + archive.getName());
+      }
+      return new VisitorArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } catch (IllegalStateException e) {
+      throw new IOException(archive.getName() + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Loads a day from its archive when there is a fresh one, or returns null so the
+   * caller falls back to replaying the text file.
+   */
+  static List<Visitor> loadIfFresh(File dayFile, Function<String, Guard> guardLookup) {
+    if (!isFresh(dayFile)) return null;
+    try {
+      List<Visitor> visitors = open(archiveFor(dayFile)).toVisitors(guardLookup);
+      LocalDate date = VisitorJournal.dateFromFileName(dayFile.getName());
+      for (Visitor v : visitors) {
+        v.assignLogDate(date);
+      }
+      return visitors;
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Ignoring unreadable visitor archive: " + e.getMessage());
+      return null;
+    }
+  }
+
+  int size() {
+    return rows;
+  }
+
+  long recordId(int row) {
+    return data.getLong(idsAt + row * 8);
+  }
+
+  LocalDateTime checkIn(int row) {
+    return time(checkInAt, checkInNanosAt, row);
+  }
+
+  LocalDateTime checkOut(int row) {
+    return time(checkOutAt, checkOutNanosAt, row);
+  }
+
+  String visitorName(int row) {
+    return heapString(textAt[NAME], row);
+  }
+
+  String contactNumber(int row) {
+    return heapString(textAt[CONTACT], row);
+  }
+
+  String presentedId(int row) {
+    return heapString(textAt[PRESENTED_ID], row);
+  }
+
+  String purpose(int row) {
+    return heapString(textAt[PURPOSE], row);
+  }
+
+  String campusArea(int row) {
+    return dictionaries[CAMPUS][code(CAMPUS, row)];
+  }
+
+  String guardLabel(int row) {
+    return dictionaries[GUARD][code(GUARD, row)];
+  }
+
+  String gateEntered(int row) {
+    return dictionaries[GATE][code(GATE, row)];
+  }
+
+  /** Builds the visitor rows; guards are looked up once per distinct label. */
+  List<Visitor> toVisitors(Function<String, Guard> guardLookup) {
+    String[] labels = dictionaries[GUARD];
+    Guard[] guards = new Guard[labels.length];
+    for (int i = 0; i < labels.length; i++) {
+      guards[i] = guardLookup.apply(labels[i]);
+    }
+    List<Visitor> visitors = new ArrayList<>(rows);
+    for (int row = 0; row < rows; row++) {
+      Visitor v = Visitor.fromCsvFields(visitorName(row), contactNumber(row), presentedId(row), purpose(row),
+          campusArea(row), guards[code(GUARD, row)], checkIn(row), checkOut(row));
+      v.assignRecordId(recordId(row));
+      visitors.add(v);
+    }
+    return visitors;
+  }
+
+  private int code(int column, int row) {
+    return data.getInt(codesAt[column] + row * 4);
+  }
+
+  private LocalDateTime time(int secondsAt, int nanosAt, int row) {
+    long seconds = data.getLong(secondsAt + row * 8);
+    if (seconds == NO_TIME) return null;
+    return LocalDateTime.ofEpochSecond(seconds, data.getInt(nanosAt + row * 4), ZoneOffset.UTC);
+  }
+
+  private String heapString(int heap, int index) {
+    int offsets = heap + 4;
+    int start = data.getInt(offsets + index * 4);
+    int end = data.getInt(offsets + (index + 1) * 4);
+    int bytesAt = offsets + (data.getInt(heap) + 1) * 4;
+    if (start == end) return "";
+    byte[] bytes = new byte[end - start];
+    data.get(bytesAt + start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Validates a heap header at {@code at}; {@code expected} is its entry count, or -1. */
+  private int checkedHeap(long at, int expected) {
+    if (at + 4 > data.limit()) throw new IllegalStateException("archive heap runs past the end of the file");
+    int heap = (int) at;
+    int count = data.getInt(heap);
+    if (count < 0 || (expected >= 0 && count != expected) || heap + 4 + (count + 1) * 4L > data.limit()) {
+      throw new IllegalStateException("archive heap has a bad entry count");
+    }
+    if (heapEnd(heap) > data.limit()) throw new IllegalStateException("archive heap runs past the end of the file");
+    return heap;
+  }
+
+  private long heapEnd(int heap) {
+    int count = data.getInt(heap);
+    int offsets = heap + 4;
+    return offsets + (count + 1) * 4L + data.getInt(offsets + count * 4);
+  }
+
+  // Writing
+
+  /**
+   * Converts a visitor day file into its archive, replacing any older archive. The
+   * source is stamped before it is read, so rows appended meanwhile leave the new
+   * archive stale rather than silently missing them.
+   */
+  static void convert(File dayFile) throws IOException {
+    File stored = DayFiles.stored(dayFile);
+    long sourceLength = stored.length();
+    long sourceModified = stored.lastModified();
+    Builder builder = new Builder();
+    VisitorJournal.replayRows(dayFile, builder::add);
+    byte[] bytes = builder.encode(sourceLength, sourceModified);
+
+    File archive = archiveFor(dayFile);
+    File temp = new File(archive.getPath() + ".tmp");
+    try (FileOutputStream out = new FileOutputStream(temp)) {
+      out.write(bytes);
+      out.getChannel().force(true);
+    }
+    Files.move(temp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Converts every closed day among {@code days} whose archive is missing or stale. */
+  static int convertClosedDays(List<File> days) {
+    int converted = 0;
+    for (File f : days) {
+      if (!isClosedDay(f) || isFresh(f)) continue;
+      try {
+        convert(f);
+        converted++;
+      } catch (IOException e) {
+        System.err.println("Failed to archive " + f.getName() + ": " + e.getMessage());
+      }
+    }
+    return converted;
+  }
+
+  /** Collects rows column by column while a day file is replayed. */
+  private static final class Builder {
+    private final List<Long> ids = new ArrayList<>();
+    private final List<LocalDateTime> checkIns = new ArrayList<>();
+    private final List<LocalDateTime> checkOuts = new ArrayList<>();
+    private final List<List<String>> text = new ArrayList<>();
+    private final List<List<Integer>> codes = new ArrayList<>();
+    private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+
+    Builder() {
+      for (int t = 0; t < TEXT_COLUMNS; t++) text.add(new ArrayList<>());
+      for (int c = 0; c < CODED_COLUMNS; c++) {
+        codes.add(new ArrayList<>());
+        dictionaries.add(new LinkedHashMap<>());
+      }
+    }
+
+    void add(long id, String[] fields, LocalDateTime checkIn, LocalDateTime checkOut) {
+      // fields: name, contact, presentedId, purpose, campus, guard, gate
+      ids.add(id);
+      checkIns.add(checkIn);
+      checkOuts.add(checkOut);
+      text.get(NAME).add(fields[0]);
+      text.get(CONTACT).add(fields[1]);
+      text.get(PRESENTED_ID).add(fields[2]);
+      text.get(PURPOSE).add(fields[3]);
+      encode(CAMPUS, fields[4]);
+      encode(GUARD, fields[5]);
+      encode(GATE, fields[6]);
+    }
+
+    private void encode(int column, String value) {
+      Map<String, Integer> dictionary = dictionaries.get(column);
+      Integer code = dictionary.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.put(value, code);
+      }
+      codes.get(column).add(code);
+    }
+
+    byte[] encode(long sourceLength, long sourceModified) throws IOException {
+      int rows = ids.size();
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(HEADER_BYTES + rows * 96);
+      DataOutputStream out = new DataOutputStream(buffer);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(rows);
+      out.writeInt(0);
+      out.writeLong(sourceLength);
+      out.writeLong(sourceModified);
+      out.writeLong(0); // file length, patched below
+      for (long id : ids) out.writeLong(id);
+      writeTimes(out, checkIns);
+      writeTimes(out, checkOuts);
+      for (List<Integer> column : codes) {
+        for (int code : column) out.writeInt(code);
+      }
+      for (List<String> column : text) writeHeap(out, column);
+      for (Map<String, Integer> dictionary : dictionaries) writeHeap(out, new ArrayList<>(dictionary.keySet()));
+      out.flush();
+
+      byte[] bytes = buffer.toByteArray();
+      ByteBuffer.wrap(bytes).putLong(32, bytes.length);
+      return bytes;
+    }
+
+    private static void writeTimes(DataOutputStream out, List<LocalDateTime> times) throws IOException {
+      for (LocalDateTime t : times) out.writeLong(t == null ? NO_TIME : t.toEpochSecond(ZoneOffset.UTC));
+      for (LocalDateTime t : times) out.writeInt(t == null ? 0 : t.getNano());
+    }
+
+    private static void writeHeap(DataOutputStream out, List<String> values) throws IOException {
+      List<byte[]> encoded = new ArrayList<>(values.size());
+      for (String value : values) {
+        encoded.add(value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+      }
+      out.writeInt(values.size());
+      int offset = 0;
+      out.writeInt(offset);
+      for (byte[] bytes : encoded) {
+        offset += bytes.length;
+        out.writeInt(offset);
+      }
+      for (byte[] bytes : encoded) out.write(bytes);
+    }
+  }
+}
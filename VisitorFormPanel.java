@@ -61,10 +61,20 @@ class VisitorFormPanel extends JPanel {
     "Security Office / Campus Security"
   };
 
+  private static final String FORM_HELP = "Fill out the form and click 'Add Visitor'. The signed-in guard is assigned automatically.";
+
   static String[] getCampusAreas() {
     return CAMPUS_AREAS.clone();
   }
 
+  /** Whether the value is one of the generic ID types offered, rather than a typed-in ID. */
+  static boolean isIdType(String value) {
+    for (String type : ID_TYPES) {
+      if (type.equals(value)) return true;
+    }
+    return false;
+  }
+
   private final JTextField visitorNameField = new JTextField(20);
   private final JTextField contactField = new JTextField(15);
   private final JComboBox<String> idTypeCombo = new JComboBox<>(ID_TYPES);
@@ -73,6 +83,9 @@ class VisitorFormPanel extends JPanel {
   private final JComboBox<String> campusAreaCombo = new JComboBox<>(CAMPUS_AREAS);
 
   private VisitorFormListener listener;
+  // returning visitors, looked up when a contact number or typed-in ID is entered
+  private VisitorProfileStore profiles;
+  private final JLabel formHelp = new JLabel(FORM_HELP);
 
   VisitorFormPanel() {
     super(new GridBagLayout());
@@ -99,7 +112,6 @@ class VisitorFormPanel extends JPanel {
     gbc.gridy++;
 
     // Instruction helper for the form
-    JLabel formHelp = new JLabel("Fill out the form and click 'Add Visitor'. The signed-in guard is assigned automatically.");
     formHelp.setFont(UITheme.BODY_FONT.deriveFont(12f));
     formHelp.setBorder(BorderFactory.createEmptyBorder(0, 0, 8, 0));
     gbc.gridwidth = 2;
@@ -114,6 +126,21 @@ class VisitorFormPanel extends JPanel {
     addPurposeField(gbc);
     addFieldRow("Campus Area", campusAreaCombo, gbc);
     addButtonRow(gbc);
+
+    contactField.addActionListener(e -> prefill(contactField.getText()));
+    idOthersField.addActionListener(e -> prefill(idOthersField.getText()));
+    java.awt.event.FocusAdapter lookup = new java.awt.event.FocusAdapter() {
+      @Override
+      public void focusLost(java.awt.event.FocusEvent e) {
+        prefill(((JTextField) e.getComponent()).getText());
+      }
+    };
+    contactField.addFocusListener(lookup);
+    idOthersField.addFocusListener(lookup);
+  }
+
+  void setProfiles(VisitorProfileStore profiles) {
+    this.profiles = profiles;
   }
 
   void setFormListener(VisitorFormListener listener) {
@@ -128,10 +155,39 @@ class VisitorFormPanel extends JPanel {
     idOthersField.setVisible(false);
     purposeArea.setText("");
     campusAreaCombo.setSelectedIndex(0);
+    formHelp.setText(FORM_HELP);
     revalidate();
     repaint();
   }
 
+  /**
+   * Fills the form from a returning visitor's last visit. Text the guard already typed
+   * is kept; when the name is someone else's, nothing is filled at all.
+   */
+  private void prefill(String typed) {
+    if (profiles == null || typed.isBlank()) {
+      return;
+    }
+    VisitorProfileStore.Profile p = profiles.find(typed);
+    String name = visitorNameField.getText().trim();
+    if (p == null || (!name.isEmpty() && !name.equalsIgnoreCase(p.visitorName))) {
+      return;
+    }
+    if (name.isEmpty()) visitorNameField.setText(p.visitorName);
+    if (contactField.getText().isBlank()) contactField.setText(p.contactNumber);
+    if (idOthersField.getText().isBlank()) {
+      if (isIdType(p.presentedId)) {
+        idTypeCombo.setSelectedItem(p.presentedId);
+      } else {
+        idTypeCombo.setSelectedItem("Others");
+        idOthersField.setText(p.presentedId);
+      }
+    }
+    if (purposeArea.getText().isBlank()) purposeArea.setText(p.purpose);
+    campusAreaCombo.setSelectedItem(p.campusArea);
+    formHelp.setText("Returning visitor, last checked in " + p.lastCheckIn.toLocalDate() + ". Check the details and click 'Add Visitor'.");
+  }
+
   private void addIdTypeField(GridBagConstraints gbc) {
     JLabel label = new JLabel("Presented ID");
     label.setFont(UITheme.BODY_FONT);
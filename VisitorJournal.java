@@ -0,0 +1,513 @@
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal for one visitor day file.
+ *
+ * Every mutation of the visitor log is written as a single record at the end of the
+ * file instead of rewriting all rows. Replaying the records in order rebuilds the
+ * in-memory list. Lines without a record tag are rows written by the old full-rewrite
+ * format and are treated as adds, so existing day files keep loading unchanged.
+ *
+ * Record layout (pipe separated, fields escaped like the old format):
+ *   @A|id|name|contact|presentedId|purpose|campus|guard|gate|checkIn|checkOut
+ *   @U|id|name|contact|presentedId|purpose|campus|guard|gate
+ *   @C|id|checkOut
+ *   @R|id
+ * followed by {@code |*} and the CRC32C of the record bytes. Newlines inside fields are
+ * escaped as {@code \n} so one record is always one line.
+ *
+ * Records are encoded on the caller's thread and written by a {@link JournalWriter};
+ * its commits and compaction swaps synchronize on the journal instance.
+ */
+class VisitorJournal {
+  static final String ADD = "@A";
+  static final String UPDATE = "@U";
+  static final String CHECKOUT = "@C";
+  static final String REMOVE = "@R";
+
+  private static final String SEP = "|";
+  private static final String FILE_PREFIX = "visitor_logs_";
+
+  private static long lastIssuedId;
+
+  private final File file;
+  private final JournalWriter writer;
+
+  // compaction bookkeeping, guarded by this
+  private long pendingBytes;        // bytes written since the last snapshot
+  private int supersedingRecords;   // update, check-out and remove records since the last snapshot
+  private long firstPendingAt;      // when the first of those records was written, 0 if none
+  private boolean unexamined;       // the file holds history no compaction pass has folded yet
+  private int generation;           // bumped whenever the file is replaced wholesale
+
+  VisitorJournal(File file, JournalWriter writer) {
+    this.file = file;
+    this.writer = writer;
+    // history already in the file has not been looked at yet; let the compactor decide
+    this.pendingBytes = file.length();
+    if (pendingBytes > 0) {
+      unexamined = true;
+      firstPendingAt = System.currentTimeMillis();
+    }
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Issues an id that is unique across day files. Ids are time based so that rows
+   * loaded from several days never collide; legacy rows get ids from {@link #legacyId}.
+   */
+  static synchronized long nextRecordId() {
+    long candidate = System.currentTimeMillis() * 1000L;
+    lastIssuedId = Math.max(candidate, lastIssuedId + 1);
+    return lastIssuedId;
+  }
+
+  private static long legacyId(LocalDate fileDate, int lineNumber) {
+    long day = fileDate == null ? 0 : fileDate.toEpochDay();
+    return day * 1_000_000L + lineNumber;
+  }
+
+  // Writing
+
+  void appendAdd(Visitor v) {
+    writer.append(this, seal(addRecord(v)), false);
+  }
+
+  void appendUpdate(Visitor v) {
+    writer.append(this, seal(String.join(SEP,
+        UPDATE,
+        Long.toString(v.getRecordId()),
+        escape(v.getVisitorName()),
+        escape(v.getContactNumber()),
+        escape(v.getPresentedId()),
+        escape(v.getPurpose()),
+        escape(v.getCampusArea()),
+        escape(v.getGuardLabel()),
+        escape(v.getGateEntered()))), true);
+  }
+
+  void appendCheckout(Visitor v) {
+    writer.append(this, seal(String.join(SEP, CHECKOUT, Long.toString(v.getRecordId()), escape(timestamp(v.getCheckOut())))), true);
+  }
+
+  void appendRemove(Visitor v) {
+    writer.append(this, seal(String.join(SEP, REMOVE, Long.toString(v.getRecordId()))), true);
+  }
+
+  // Called from the writer thread
+
+  /** Appends a batch of encoded records with a single write, optionally forcing it to disk. */
+  synchronized void commit(List<String> records, int superseding, boolean force) throws IOException {
+    byte[] data = encode(records);
+    File parent = file.getParentFile();
+    if (parent != null) parent.mkdirs();
+    if (DayFiles.inflate(file)) {
+      // a late change to a compressed day; its history is back in play for compaction
+      pendingBytes = file.length();
+      generation++;
+      unexamined = true;
+      if (supersedingRecords == 0) firstPendingAt = System.currentTimeMillis();
+    }
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(data);
+      if (force) out.getChannel().force(false);
+    }
+    pendingBytes += data.length;
+    if (superseding > 0) {
+      if (supersedingRecords == 0) firstPendingAt = System.currentTimeMillis();
+      supersedingRecords += superseding;
+    }
+  }
+
+  /**
+   * Stores the day compressed. Holding the lock keeps appends and compaction swaps
+   * out while the plain file is replaced; returns false when it already was.
+   */
+  synchronized boolean compress() throws IOException {
+    if (!DayFiles.compress(file)) return false;
+    generation++;
+    pendingBytes = 0;
+    supersedingRecords = 0;
+    firstPendingAt = 0;
+    unexamined = false;
+    return true;
+  }
+
+  /** Forces previously committed records to disk. */
+  synchronized void sync() throws IOException {
+    if (!file.exists()) return;
+    try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+      channel.force(false);
+    }
+  }
+
+  private static byte[] encode(List<String> records) {
+    StringBuilder sb = new StringBuilder();
+    String newline = System.lineSeparator();
+    for (String record : records) {
+      sb.append(record).append(newline);
+    }
+    return sb.toString().getBytes();
+  }
+
+  static String addRecord(Visitor v) {
+    return String.join(SEP,
+        ADD,
+        Long.toString(v.getRecordId()),
+        escape(v.getVisitorName()),
+        escape(v.getContactNumber()),
+        escape(v.getPresentedId()),
+        escape(v.getPurpose()),
+        escape(v.getCampusArea()),
+        escape(v.getGuardLabel()),
+        escape(v.getGateEntered()),
+        escape(timestamp(v.getCheckIn())),
+        escape(timestamp(v.getCheckOut())));
+  }
+
+  // Compaction
+
+  /**
+   * True once enough superseded history has piled up: either the file grew past
+   * {@code sizeThreshold} bytes since the last snapshot, or the oldest superseding
+   * record is older than {@code ageThresholdMillis}. History that was already in the
+   * file when it was opened counts as superseding until a pass has folded it.
+   */
+  synchronized boolean isCompactionDue(long sizeThreshold, long ageThresholdMillis, long now) {
+    if (supersedingRecords == 0 && !unexamined) return false;
+    return pendingBytes >= sizeThreshold || now - firstPendingAt >= ageThresholdMillis;
+  }
+
+  /**
+   * Rewrites the file as one add record per surviving visitor. The replayed prefix is
+   * folded without holding the lock; only copying the records appended meanwhile and
+   * the atomic rename happen while appends are blocked. Returns true when the file
+   * was rewritten.
+   */
+  boolean compact() throws IOException {
+    long prefixLength;
+    int startGeneration;
+    int supersededAtStart;
+    synchronized (this) {
+      prefixLength = file.length();
+      startGeneration = generation;
+      supersededAtStart = supersedingRecords;
+    }
+    if (prefixLength == 0) return false;
+
+    Fold fold = fold(new ByteArrayInputStream(readPrefix(prefixLength)), dateFromFileName(file.getName()), null);
+
+    if (fold.supersedingRecords == 0 && fold.legacyRows == 0) {
+      // nothing to drop; the file is already a snapshot
+      synchronized (this) {
+        if (generation == startGeneration) {
+          supersedingRecords -= supersededAtStart;
+          if (supersedingRecords == 0) firstPendingAt = 0;
+          pendingBytes = file.length() - prefixLength;
+          unexamined = false;
+        }
+      }
+      return false;
+    }
+
+    File temp = new File(file.getPath() + ".compact");
+    try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp, false)))) {
+      for (Map.Entry<Long, Row> row : fold.rows.entrySet()) {
+        bw.write(seal(addRecord(row.getKey(), row.getValue())));
+        bw.newLine();
+      }
+    }
+
+    synchronized (this) {
+      if (generation != startGeneration) {
+        // the file was replaced while we were folding; our snapshot is stale
+        Files.deleteIfExists(temp.toPath());
+        return false;
+      }
+      try (FileChannel source = new RandomAccessFile(file, "r").getChannel();
+           FileChannel target = new RandomAccessFile(temp, "rw").getChannel()) {
+        long tail = source.size() - prefixLength;
+        long copied = 0;
+        target.position(target.size());
+        while (copied < tail) {
+          copied += source.transferTo(prefixLength + copied, tail - copied, target);
+        }
+        target.force(true);
+        pendingBytes = target.size();
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      generation++;
+      supersedingRecords -= supersededAtStart;
+      if (supersedingRecords == 0) firstPendingAt = 0;
+      unexamined = false;
+    }
+    return true;
+  }
+
+  private byte[] readPrefix(long length) throws IOException {
+    byte[] data = new byte[(int) length];
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      raf.readFully(data);
+    }
+    return data;
+  }
+
+  private static String addRecord(long id, Row row) {
+    StringBuilder sb = new StringBuilder(ADD).append(SEP).append(id);
+    for (String field : row.text) {
+      sb.append(SEP).append(escape(field));
+    }
+    sb.append(SEP).append(escape(timestamp(row.checkIn)));
+    sb.append(SEP).append(escape(timestamp(row.checkOut)));
+    return sb.toString();
+  }
+
+  // Reading
+
+  /** A surviving visitor row while folding, with its text fields as stored. */
+  private static final class Row {
+    static final int TEXT_FIELDS = 7;
+    // name, contact, presentedId, purpose, campus, guard, gate
+    final String[] text = new String[TEXT_FIELDS];
+    LocalDateTime checkIn;
+    LocalDateTime checkOut;
+  }
+
+  /** Surviving rows of a journal keyed by record id. */
+  private static final class Fold {
+    final Map<Long, Row> rows = new LinkedHashMap<>();
+    int supersedingRecords;
+    int legacyRows;
+    // byte offset where a run of damaged records starts, -1 while the latest record is good
+    long damagedFrom = -1;
+    final ByteArrayOutputStream damaged = new ByteArrayOutputStream();
+    // the final line had no line terminator
+    boolean unterminatedTail;
+  }
+
+  /**
+   * Replays a day file and returns the surviving visitors in insertion order.
+   * Records failing their checksum are skipped and quarantined; a damaged tail is also
+   * cut from the file. Other malformed rows are skipped as before. Problems are added
+   * to {@code report} when one is given.
+   */
+  static List<Visitor> replay(File f, Function<String, Guard> guardLookup, JournalLoadReport report) throws IOException {
+    JournalLoadReport problems = report == null ? new JournalLoadReport(f) : report;
+    Fold fold;
+    try (InputStream in = DayFiles.open(f)) {
+      fold = fold(in, dateFromFileName(f.getName()), problems);
+    }
+    repair(f, fold, problems);
+    LocalDate fileDate = dateFromFileName(f.getName());
+    List<Visitor> visitors = new ArrayList<>(fold.rows.size());
+    for (Map.Entry<Long, Row> row : fold.rows.entrySet()) {
+      try {
+        Visitor v = visitorFromRow(row.getValue(), guardLookup);
+        v.assignRecordId(row.getKey());
+        v.assignLogDate(fileDate);
+        visitors.add(v);
+      } catch (Exception inner) {
+        // skip malformed rows but continue
+        System.err.println("Skipping malformed saved visitor row: " + inner.getMessage());
+        problems.malformedRow();
+      }
+    }
+    if (problems.hasProblems()) {
+      System.err.println(problems.describe());
+    }
+    return visitors;
+  }
+
+  static List<Visitor> replay(File f, Function<String, Guard> guardLookup) throws IOException {
+    return replay(f, guardLookup, null);
+  }
+
+  /** Receives the surviving rows of a day file with their fields as stored. */
+  interface RowSink {
+    // text: name, contact, presentedId, purpose, campus, guard, gate
+    void row(long id, String[] text, LocalDateTime checkIn, LocalDateTime checkOut);
+  }
+
+  /**
+   * Folds a day file and hands each surviving row to {@code sink}, without resolving
+   * guards or repairing the file; damaged records are simply skipped. Used by the
+   * archive converter, which may read a file while the writer appends to it.
+   */
+  static void replayRows(File f, RowSink sink) throws IOException {
+    try (InputStream in = DayFiles.open(f)) {
+      replayRows(in, dateFromFileName(f.getName()), sink);
+    }
+  }
+
+  /** Same as {@link #replayRows(File, RowSink)} for a day file that is already open. */
+  static void replayRows(InputStream in, LocalDate fileDate, RowSink sink) throws IOException {
+    Fold fold = fold(in, fileDate, null);
+    for (Map.Entry<Long, Row> row : fold.rows.entrySet()) {
+      Row r = row.getValue();
+      sink.row(row.getKey(), r.text, r.checkIn, r.checkOut);
+    }
+  }
+
+  /** Quarantines damaged records and cuts a damaged tail off the file. */
+  private static void repair(File f, Fold fold, JournalLoadReport report) throws IOException {
+    if (fold.damaged.size() > 0) {
+      File quarantine = new File(f.getPath() + ".quarantine");
+      try (FileOutputStream out = new FileOutputStream(quarantine, true)) {
+        out.write(("# " + LocalDateTime.now() + " damaged records from " + f.getName() + System.lineSeparator()).getBytes());
+        fold.damaged.writeTo(out);
+      }
+      report.quarantinedTo(quarantine);
+    }
+    if (!f.isFile()) {
+      // stored compressed: nothing is appended until it is inflated, which ends the last line
+      return;
+    }
+    if (fold.damagedFrom >= 0) {
+      try (FileChannel channel = new RandomAccessFile(f, "rw").getChannel()) {
+        report.truncated(channel.size() - fold.damagedFrom);
+        channel.truncate(fold.damagedFrom);
+        channel.force(true);
+      }
+    } else if (fold.unterminatedTail) {
+      // the last record is intact but lost its newline; restore it before anything is appended
+      try (FileOutputStream out = new FileOutputStream(f, true)) {
+        out.write(System.lineSeparator().getBytes());
+      }
+    }
+  }
+
+  private static Fold fold(InputStream raw, LocalDate fileDate, JournalLoadReport report) throws IOException {
+    Fold fold = new Fold();
+    PipeLineReader reader = new PipeLineReader(raw);
+    CRC32C crc = new CRC32C();
+    while (reader.nextLine()) {
+      if (reader.lineLength() == 0) continue;
+      // the checksum is verified on the raw bytes before anything is decoded
+      int payload = reader.checksummedLength(crc);
+      boolean sealed = payload != PipeLineReader.UNSEALED;
+      if (payload == PipeLineReader.DAMAGED || (!sealed && isRecord(reader))) {
+        if (report != null) report.corruptRecord();
+        if (fold.damagedFrom < 0) fold.damagedFrom = reader.lineStart();
+        reader.copyLineTo(fold.damaged);
+        continue;
+      }
+      // a good record after damaged ones: they were isolated, keep the file as is
+      fold.damagedFrom = -1;
+      fold.unterminatedTail = !reader.lineTerminated();
+      try {
+        reader.split(sealed ? payload : reader.lineLength());
+        apply(fold, reader, fileDate, sealed);
+      } catch (Exception inner) {
+        System.err.println("Skipping malformed saved visitor row: " + inner.getMessage());
+        if (report != null) report.malformedRow();
+      }
+    }
+    return fold;
+  }
+
+  /**
+   * Whether the line carries one of the journal record tags. Only those can be torn
+   * records; any other unsealed line is a row in the old format, whose name may well
+   * start with '@'.
+   */
+  private static boolean isRecord(PipeLineReader line) {
+    return line.startsWith(ADD + SEP) || line.startsWith(UPDATE + SEP)
+        || line.startsWith(CHECKOUT + SEP) || line.startsWith(REMOVE + SEP);
+  }
+
+  private static void apply(Fold fold, PipeLineReader line, LocalDate fileDate, boolean sealed) {
+    if (!sealed) {
+      // untagged row from the old full-rewrite format
+      fold.rows.put(legacyId(fileDate, line.lineNumber()), readRow(line, 0));
+      fold.legacyRows++;
+    } else if (line.fieldEquals(0, ADD)) {
+      fold.rows.put(line.fieldAsLong(1), readRow(line, 2));
+    } else if (line.fieldEquals(0, UPDATE)) {
+      Row row = requireLive(fold, line.fieldAsLong(1));
+      // name, contact, presentedId, purpose, campus, guard, gate
+      for (int i = 0; i < Row.TEXT_FIELDS; i++) {
+        row.text[i] = line.field(2 + i);
+      }
+      fold.supersedingRecords++;
+    } else if (line.fieldEquals(0, CHECKOUT)) {
+      requireLive(fold, line.fieldAsLong(1)).checkOut = line.fieldAsTimestamp(2);
+      fold.supersedingRecords++;
+    } else if (line.fieldEquals(0, REMOVE)) {
+      fold.rows.remove(line.fieldAsLong(1));
+      fold.supersedingRecords++;
+    } else {
+      throw new IllegalStateException("unknown record tag '" + line.field(0) + "'");
+    }
+  }
+
+  private static Row readRow(PipeLineReader line, int offset) {
+    // name, contact, presentedId, purpose, campus, guard, gate, checkIn, checkOut
+    Row row = new Row();
+    for (int i = 0; i < Row.TEXT_FIELDS; i++) {
+      row.text[i] = line.field(offset + i);
+    }
+    row.checkIn = line.fieldAsTimestamp(offset + Row.TEXT_FIELDS);
+    row.checkOut = line.fieldAsTimestamp(offset + Row.TEXT_FIELDS + 1);
+    return row;
+  }
+
+  private static Row requireLive(Fold fold, long id) {
+    Row row = fold.rows.get(id);
+    if (row == null) {
+      throw new IllegalStateException("record refers to unknown visitor " + id);
+    }
+    return row;
+  }
+
+  private static Visitor visitorFromRow(Row row, Function<String, Guard> guardLookup) {
+    // the gate column is skipped; it's derived from the guard
+    Guard guard = guardLookup.apply(row.text[5]);
+    return Visitor.fromCsvFields(row.text[0], row.text[1], row.text[2], row.text[3], row.text[4], guard,
+        row.checkIn, row.checkOut);
+  }
+
+  static LocalDate dateFromFileName(String name) {
+    if (name == null || !name.startsWith(FILE_PREFIX)) return null;
+    int start = FILE_PREFIX.length();
+    if (name.length() < start + 10) return null;
+    try {
+      return LocalDate.parse(name.substring(start, start + 10));
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static String timestamp(LocalDateTime value) {
+    return value == null ? "" : value.toString();
+  }
+
+  private static String escape(String s) {
+    return PipeLineReader.escape(s);
+  }
+
+  private static String seal(String record) {
+    return PipeLineReader.seal(record);
+  }
+}
@@ -10,6 +10,7 @@ import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 class VisitorLogApp extends JFrame implements LoginPanel.LoginHandler {
   private final CardLayout cardLayout = new CardLayout();
@@ -36,6 +37,15 @@ class VisitorLogApp extends JFrame implements LoginPanel.LoginHandler {
 
     buildDashboards();
     cardLayout.show(cardPanel, "login");
+
+    // write out any visitor records still queued for disk before the JVM exits
+    Runtime.getRuntime().addShutdownHook(new Thread(visitorTableModel::flushPendingWrites, "visitor-log-flush"));
+
+    JournalLoadReport loadReport = visitorTableModel.getLastLoadReport();
+    if (loadReport != null && loadReport.hasProblems()) {
+      SwingUtilities.invokeLater(() ->
+          JOptionPane.showMessageDialog(this, loadReport.describe(), "Visitor Log Recovered", JOptionPane.WARNING_MESSAGE));
+    }
   }
 
   private void buildDashboards() {
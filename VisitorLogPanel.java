@@ -16,21 +16,29 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
-import javax.swing.RowFilter;
 import javax.swing.table.TableRowSorter;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.UIManager;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 
 class VisitorLogPanel extends JPanel {
   private final VisitorTableModel tableModel;
+  // the page of the shared model this panel shows
+  private final VisitorPageModel pageModel;
   private final JTable logTable;
-  private TableRowSorter<VisitorTableModel> sorter;
+  private TableRowSorter<VisitorPageModel> sorter;
   // advanced filter state
   private String currentQuery = "";
+  // when set, currentQuery is read as a VisitorQuery, or as a name to match loosely
+  private boolean querySyntax;
+  private boolean fuzzyNames;
+  // the last query that parsed, and what was wrong with the one typed since, if anything
+  private VisitorQuery parsedQuery;
+  private String queryError;
   private int currentSearchColumn = -1; // -1 = all columns
   private java.time.LocalDate dateFrom = null;
   private java.time.LocalDate dateTo = null;
@@ -39,7 +47,13 @@ class VisitorLogPanel extends JPanel {
   // pagination state
   private int pageSize = 10;
   private int currentPage = 1;
-  private final java.util.List<Integer> currentMatches = new java.util.ArrayList<>();
+  // counts from the last page the search thread posted
+  private int totalMatches;
+  private int totalPages = 1;
+  // search still running on the search thread, if any
+  private VisitorSearchIndex.Search pendingSearch;
+  // told whenever a search starts or its page is shown
+  private Runnable filterListener = () -> { };
   private final VisitorFormPanel formPanel;
   private final boolean adminMode;
   private List<Guard> currentGuards;
@@ -49,12 +63,15 @@ class VisitorLogPanel extends JPanel {
   private JButton popoutButton;
 
   private JButton deleteButton;
+  private JLabel scanStatusLabel;
   private JButton editButton;
 
   VisitorLogPanel(VisitorTableModel sharedModel, List<Guard> guards, List<Admin> admins, boolean adminMode) {
     this.adminMode = adminMode;
     this.formPanel = adminMode ? null : new VisitorFormPanel();
     this.tableModel = sharedModel == null ? new VisitorTableModel(guards, admins) : sharedModel;
+    this.pageModel = new VisitorPageModel(tableModel);
+    pageModel.setRowsMovedListener(this::rebuildFilter);
     this.logTable = createLogTable();
     this.currentGuards = guards == null ? List.of() : guards;
     setLayout(new BorderLayout(12, 12));
@@ -66,6 +83,7 @@ class VisitorLogPanel extends JPanel {
     if (!adminMode) {
       add(formPanel, BorderLayout.WEST);
       formPanel.setFormListener(this::handleFormSubmission);
+      formPanel.setProfiles(tableModel.getProfiles());
     }
     tableWrapper = createTablePanel();
     add(tableWrapper, BorderLayout.CENTER);
@@ -80,7 +98,7 @@ class VisitorLogPanel extends JPanel {
   }
 
   private JTable createLogTable() {
-    JTable table = new JTable(tableModel);
+    JTable table = new JTable(pageModel);
     table.setFillsViewportHeight(true);
     table.setAutoCreateRowSorter(true);
     table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -89,7 +107,7 @@ class VisitorLogPanel extends JPanel {
     table.setForeground(java.awt.Color.BLACK);
     table.setBackground(UITheme.PANEL_BG);
     JTableHeader header = table.getTableHeader();
-    sorter = new TableRowSorter<>(tableModel);
+    sorter = new TableRowSorter<>(pageModel);
     table.setRowSorter(sorter);
     header.setFont(UITheme.BODY_FONT.deriveFont(java.awt.Font.BOLD));
     header.setReorderingAllowed(false);
@@ -124,11 +142,65 @@ class VisitorLogPanel extends JPanel {
   }
 
   void setSearchQuery(String query) {
-    this.currentQuery = query == null ? "" : query.trim();
+    String trimmed = query == null ? "" : query.trim();
+    if (trimmed.equals(currentQuery)) return;
+    this.currentQuery = trimmed;
     this.currentPage = 1;
+    if (!parseQuery()) {
+      // keep showing what the last good query found until this one is fixed
+      filterListener.run();
+      return;
+    }
+    rebuildFilter();
+  }
+
+  /** Reads the search text as a {@link VisitorQuery} instead of plain text. */
+  void setQuerySyntax(boolean enabled) {
+    if (enabled == querySyntax) return;
+    this.querySyntax = enabled;
+    if (enabled) this.fuzzyNames = false;
+    this.parsedQuery = null;
+    this.currentPage = 1;
+    parseQuery();
     rebuildFilter();
   }
 
+  /**
+   * Matches the search text against visitor names by spelling and sound, closest
+   * first, instead of as exact text.
+   */
+  void setFuzzyNames(boolean enabled) {
+    if (enabled == fuzzyNames) return;
+    this.fuzzyNames = enabled;
+    if (enabled) {
+      this.querySyntax = false;
+      // the ranking is the order; a sorted column would hide it
+      sorter.setSortKeys(null);
+    }
+    this.currentPage = 1;
+    parseQuery();
+    rebuildFilter();
+  }
+
+  /** Why the search text does not parse as a query, or null. */
+  String getQueryError() { return queryError; }
+
+  /** Parses the search text when query syntax is on; false when it does not parse. */
+  private boolean parseQuery() {
+    queryError = null;
+    if (!querySyntax || currentQuery.isEmpty()) {
+      parsedQuery = null;
+      return true;
+    }
+    try {
+      parsedQuery = VisitorQuery.parse(currentQuery);
+      return true;
+    } catch (IllegalArgumentException e) {
+      queryError = e.getMessage();
+      return false;
+    }
+  }
+
   void setSearchColumn(int columnIndex) {
     this.currentSearchColumn = columnIndex;
     this.currentPage = 1;
@@ -166,9 +238,13 @@ class VisitorLogPanel extends JPanel {
 
   int getCurrentPage() { return currentPage; }
 
-  int getTotalPages() { return pageSize <= 0 ? 1 : (int) Math.max(1, Math.ceil((double) currentMatches.size() / pageSize)); }
+  int getTotalPages() { return totalPages; }
+
+  int getTotalMatches() { return totalMatches; }
 
-  int getTotalMatches() { return currentMatches.size(); }
+  boolean isSearching() { return pendingSearch != null; }
+
+  void setFilterListener(Runnable listener) { this.filterListener = listener; }
 
   void exportJson(String filename) { tableModel.exportToJsonFile(filename); }
 
@@ -180,78 +256,48 @@ class VisitorLogPanel extends JPanel {
     rebuildFilter();
   }
 
-  private void rebuildFilter() {
-    currentMatches.clear();
-    int n = tableModel.getRowCount();
-    String q = currentQuery == null ? "" : currentQuery.toLowerCase(java.util.Locale.ROOT);
-    for (int i = 0; i < n; i++) {
-      Visitor v = tableModel.getVisitor(i);
-      if (v == null) continue;
-      if (!passesQuery(v, q, currentSearchColumn, i)) continue;
-      if (!passesDateRange(v)) continue;
-      currentMatches.add(i);
-    }
-
-    if (currentMatches.isEmpty()) {
-      // a filter that matches nothing
-      sorter.setRowFilter(new RowFilter<VisitorTableModel, Integer>() {
-        @Override
-        public boolean include(Entry<? extends VisitorTableModel, ? extends Integer> entry) {
-          return false;
-        }
-      });
-      return;
-    }
-
-    java.util.Set<Integer> allowed = new java.util.HashSet<>();
-    if (pageSize <= 0) {
-      allowed.addAll(currentMatches);
-    } else {
-      int total = currentMatches.size();
-      int totalPages = (int) Math.max(1, Math.ceil((double) total / pageSize));
-      if (currentPage > totalPages) currentPage = totalPages;
-      int start = (currentPage - 1) * pageSize;
-      for (int k = start; k < Math.min(total, start + pageSize); k++) {
-        allowed.add(currentMatches.get(k));
-      }
-    }
-
-    final java.util.Set<Integer> allowedModelIndices = allowed;
-    sorter.setRowFilter(new RowFilter<VisitorTableModel, Integer>() {
-      @Override
-      public boolean include(Entry<? extends VisitorTableModel, ? extends Integer> entry) {
-        Integer modelIndex = entry.getIdentifier();
-        return allowedModelIndices.contains(modelIndex);
-      }
+  /** Loads every visit in the date range across all day files; rows arrive while it runs. */
+  void loadRange(java.time.LocalDate from, java.time.LocalDate to, boolean useCheckOut,
+                 java.util.function.Consumer<Boolean> onProgress) {
+    currentPage = 1;
+    tableModel.loadRange(from, to, useCheckOut, done -> {
+      rebuildFilter();
+      onProgress.accept(done);
     });
+    rebuildFilter();
   }
 
-  private boolean passesDateRange(Visitor v) {
-    if (dateFrom == null && dateTo == null) return true;
-    java.time.LocalDateTime dt = dateUseCheckOut ? v.getCheckOut() : v.getCheckIn();
-    if (dt == null) return false;
-    java.time.LocalDate d = dt.toLocalDate();
-    if (dateFrom != null && d.isBefore(dateFrom)) return false;
-    return dateTo == null || !d.isAfter(dateTo);
+  /** Hands the filter to the search thread; the page shows up in {@link #showPage}. */
+  private void rebuildFilter() {
+    if (pendingSearch != null) pendingSearch.cancel();
+    VisitorSearchIndex.Filter filter;
+    if (fuzzyNames) {
+      filter = VisitorSearchIndex.Filter.fuzzyName(currentQuery, dateFrom, dateTo, dateUseCheckOut, pageSize, currentPage);
+    } else if (querySyntax) {
+      // an empty or unparsed query shows every row in the date range
+      filter = parsedQuery == null
+          ? new VisitorSearchIndex.Filter("", -1, dateFrom, dateTo, dateUseCheckOut, pageSize, currentPage)
+          : new VisitorSearchIndex.Filter(parsedQuery, dateFrom, dateTo, dateUseCheckOut, pageSize, currentPage);
+    } else {
+      filter = new VisitorSearchIndex.Filter(currentQuery, currentSearchColumn,
+          dateFrom, dateTo, dateUseCheckOut, pageSize, currentPage);
+    }
+    pendingSearch = tableModel.getSearchIndex().search(filter, this::showPage);
+    filterListener.run();
   }
 
-  private boolean passesQuery(Visitor v, String qLower, int columnIndex, int modelIndex) {
-    if (qLower == null || qLower.isEmpty()) return true;
-    if (columnIndex >= 0) {
-      Object val = tableModel.getValueAt(modelIndex, columnIndex);
-      return val != null && val.toString().toLowerCase(java.util.Locale.ROOT).contains(qLower);
+  private void showPage(VisitorSearchIndex.Page page) {
+    if (!tableModel.getSearchIndex().isCurrent(page)) {
+      // rows moved while it ran, so its row numbers may point at the wrong visitors
+      rebuildFilter();
+      return;
     }
-    if (v.getVisitorName().toLowerCase(java.util.Locale.ROOT).contains(qLower)) return true;
-    if (v.getContactNumber().toLowerCase(java.util.Locale.ROOT).contains(qLower)) return true;
-    if (v.getPresentedId().toLowerCase(java.util.Locale.ROOT).contains(qLower)) return true;
-    if (v.getPurpose().toLowerCase(java.util.Locale.ROOT).contains(qLower)) return true;
-    if (v.getCampusArea().toLowerCase(java.util.Locale.ROOT).contains(qLower)) return true;
-    if (v.getGuardLabel().toLowerCase(java.util.Locale.ROOT).contains(qLower)) return true;
-    if (v.getGateEntered().toLowerCase(java.util.Locale.ROOT).contains(qLower)) return true;
-    String checkIn = v.getCheckInTime();
-    if (checkIn.toLowerCase(java.util.Locale.ROOT).contains(qLower)) return true;
-    String checkOut = v.getCheckOutTime();
-    return checkOut.toLowerCase(java.util.Locale.ROOT).contains(qLower);
+    pendingSearch = null;
+    totalMatches = page.getTotalMatches();
+    totalPages = page.getTotalPages();
+    currentPage = page.getPage();
+    pageModel.showRows(page.getRows());
+    filterListener.run();
   }
 
   String[] getColumnNames() {
@@ -311,12 +357,20 @@ class VisitorLogPanel extends JPanel {
     deleteButton.addActionListener(e -> removeEntry());
     deleteButton.setVisible(adminMode);
 
+    JTextField scanField = new JTextField(14);
+    scanField.setToolTipText("Scan or type the visitor's ID or contact number and press Enter to check them out.");
+    scanField.addActionListener(e -> checkoutByScan(scanField));
+    scanStatusLabel = new JLabel(" ");
+    scanStatusLabel.setFont(UITheme.BODY_FONT.deriveFont(12f));
+
     JPanel actionPanel = new JPanel();
     actionPanel.setToolTipText("Use these actions to manage the selected visitor entry.");
     actionPanel.setBackground(UITheme.PANEL_BG);
     actionPanel.setBorder(BorderFactory.createCompoundBorder(
         BorderFactory.createLineBorder(UITheme.BORDER),
         BorderFactory.createEmptyBorder(12, 12, 12, 12)));
+    actionPanel.add(new JLabel("Scan or type ID to check out:"));
+    actionPanel.add(scanField);
     actionPanel.add(checkoutButton);
     if (adminMode) {
       actionPanel.add(editButton);
@@ -332,7 +386,11 @@ class VisitorLogPanel extends JPanel {
     tableHelp.setBorder(BorderFactory.createEmptyBorder(0, 0, 6, 0));
     container.add(tableHelp, BorderLayout.NORTH);
     container.add(tableScroll, BorderLayout.CENTER);
-    container.add(actionPanel, BorderLayout.SOUTH);
+    JPanel actions = new JPanel(new BorderLayout(0, 4));
+    actions.setOpaque(false);
+    actions.add(actionPanel, BorderLayout.CENTER);
+    actions.add(scanStatusLabel, BorderLayout.SOUTH);
+    container.add(actions, BorderLayout.SOUTH);
     return container;
   }
 
@@ -345,6 +403,9 @@ class VisitorLogPanel extends JPanel {
       JOptionPane.showMessageDialog(this, validationMessage, "Missing Information", JOptionPane.WARNING_MESSAGE);
       return;
     }
+    if (!passesWatchlist(data)) {
+      return;
+    }
 
     tableModel.addVisitor(Visitor.fromFormData(data));
     if (formPanel != null) {
@@ -352,6 +413,42 @@ class VisitorLogPanel extends JPanel {
     }
   }
 
+  /**
+   * Screens a new entry against the watchlist. A denied entry is refused; a flagged
+   * one is added only if the guard says so. Nothing is added before the list is loaded.
+   */
+  private boolean passesWatchlist(VisitorFormData data) {
+    Watchlist watchlist = tableModel.getWatchlist();
+    if (!watchlist.isLoaded()) {
+      String error = watchlist.getLoadError();
+      if (error != null) {
+        JOptionPane.showMessageDialog(this, "The watchlist could not be read, so the entry cannot be screened:\n" + error
+            + "\n\nNo entries can be added until it is fixed. Contact the Security Office.", "Watchlist Unavailable",
+            JOptionPane.ERROR_MESSAGE);
+      } else {
+        JOptionPane.showMessageDialog(this, "The watchlist is still loading, so the entry cannot be screened yet."
+            + "\nPlease try again in a moment.", "Watchlist Loading", JOptionPane.WARNING_MESSAGE);
+      }
+      return false;
+    }
+    List<Watchlist.Entry> hits = watchlist.screen(data);
+    if (hits.isEmpty()) {
+      return true;
+    }
+    StringBuilder details = new StringBuilder();
+    for (Watchlist.Entry hit : hits) {
+      details.append("\n- ").append(hit);
+    }
+    if (hits.get(0).deny) {
+      JOptionPane.showMessageDialog(this, data.getVisitorName() + " is on the watchlist and may not enter:" + details
+          + "\n\nContact the Security Office.", "Entry Denied", JOptionPane.ERROR_MESSAGE);
+      return false;
+    }
+    int choice = JOptionPane.showConfirmDialog(this, data.getVisitorName() + " matches the watchlist:" + details
+        + "\n\nAdd the entry anyway?", "Watchlist Match", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+    return choice == JOptionPane.YES_OPTION;
+  }
+
   private String validate(VisitorFormData data) {
     if (data.getVisitorName().isEmpty()) {
       return "Visitor name is required.";
@@ -380,6 +477,50 @@ class VisitorLogPanel extends JPanel {
     }
   }
 
+  /**
+   * Checks out the open visit whose presented ID or contact number was scanned, looked
+   * up in the model's index rather than in the table. When several open visits share
+   * it, the guard picks one; the field is cleared for the next scan either way.
+   */
+  private void checkoutByScan(JTextField scanField) {
+    String presented = scanField.getText().trim();
+    scanField.setText("");
+    if (presented.isEmpty()) {
+      return;
+    }
+    List<Visitor> open = tableModel.findOpenVisits(presented);
+    Visitor visitor;
+    if (open.isEmpty()) {
+      showScanStatus("No open visit for " + presented + ".", true);
+      return;
+    } else if (open.size() == 1) {
+      visitor = open.get(0);
+    } else {
+      String[] choices = new String[open.size()];
+      for (int i = 0; i < choices.length; i++) {
+        Visitor v = open.get(i);
+        choices[i] = (i + 1) + ". " + v.getVisitorName() + " - in " + v.getCheckInTime() + " (" + v.getCampusArea() + ")";
+      }
+      Object picked = JOptionPane.showInputDialog(this, "More than one open visit matches " + presented + ":",
+          "Choose Visit", JOptionPane.QUESTION_MESSAGE, null, choices, choices[0]);
+      if (picked == null) {
+        return;
+      }
+      visitor = open.get(java.util.Arrays.asList(choices).indexOf(picked));
+    }
+    if (tableModel.markCheckout(visitor, LocalDateTime.now())) {
+      showScanStatus("Checked out " + visitor.getVisitorName() + " (in " + visitor.getCheckInTime() + ").", false);
+    } else {
+      showScanStatus(visitor.getVisitorName() + " is already checked out.", true);
+    }
+    scanField.requestFocusInWindow();
+  }
+
+  private void showScanStatus(String text, boolean problem) {
+    scanStatusLabel.setText(text);
+    scanStatusLabel.setForeground(problem ? java.awt.Color.RED.darker() : UIManager.getColor("Label.foreground"));
+  }
+
   private void removeEntry() {
     if (!adminMode) {
       return;
@@ -423,7 +564,7 @@ class VisitorLogPanel extends JPanel {
       JOptionPane.showMessageDialog(this, "Select a visitor entry first.", "No Selection", JOptionPane.INFORMATION_MESSAGE);
       return -1;
     }
-    return logTable.convertRowIndexToModel(selectedRow);
+    return pageModel.toModelRow(logTable.convertRowIndexToModel(selectedRow));
   }
 
   private void toggleTableDetachment() {
@@ -0,0 +1,129 @@
+import java.util.Arrays;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * The rows of the visitor table that the log panel is showing.
+ *
+ * Until a search has run it passes every row of the {@link VisitorTableModel} through
+ * unchanged. Once the panel shows a page of matches, its rows are exactly that page,
+ * read straight out of an int array of model rows, so the table and its sorter only
+ * ever see a page worth of rows and turning a page costs nothing per hidden row.
+ *
+ * While a page is shown, edits to its rows repaint in place. Rows added or removed
+ * in the model shift the page's row numbers to match and tell the panel, which asks
+ * the search thread for a fresh page.
+ */
+class VisitorPageModel extends AbstractTableModel {
+  private final VisitorTableModel base;
+  // model rows shown, in order; null while every row is passed through
+  private int[] rows;
+  private Runnable rowsMovedListener = () -> { };
+  private boolean rowsMovedQueued;
+
+  VisitorPageModel(VisitorTableModel base) {
+    this.base = base;
+    base.addTableModelListener(this::baseChanged);
+  }
+
+  /** Shows exactly these model rows. */
+  void showRows(int[] modelRows) {
+    rows = modelRows.clone();
+    fireTableDataChanged();
+  }
+
+  /**
+   * Told, once per burst of model events, when rows were added or removed while a
+   * page is shown.
+   */
+  void setRowsMovedListener(Runnable listener) {
+    this.rowsMovedListener = listener;
+  }
+
+  /** The {@link VisitorTableModel} row behind a row of this model. */
+  int toModelRow(int row) {
+    return rows == null ? row : rows[row];
+  }
+
+  @Override
+  public int getRowCount() {
+    return rows == null ? base.getRowCount() : rows.length;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return base.getColumnCount();
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return base.getColumnName(column);
+  }
+
+  @Override
+  public Class<?> getColumnClass(int columnIndex) {
+    return base.getColumnClass(columnIndex);
+  }
+
+  @Override
+  public Object getValueAt(int rowIndex, int columnIndex) {
+    return base.getValueAt(toModelRow(rowIndex), columnIndex);
+  }
+
+  private void rowsMoved() {
+    // after the rest of the model's listeners, the search index among them, have seen it
+    if (rowsMovedQueued) return;
+    rowsMovedQueued = true;
+    SwingUtilities.invokeLater(() -> {
+      rowsMovedQueued = false;
+      rowsMovedListener.run();
+    });
+  }
+
+  private void baseChanged(TableModelEvent e) {
+    int first = e.getFirstRow();
+    int last = e.getLastRow();
+    if (rows == null) {
+      fireTableChanged(new TableModelEvent(this, first, last, e.getColumn(), e.getType()));
+      return;
+    }
+    if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+      // nothing is known about where the page's rows went
+      rows = new int[0];
+      fireTableDataChanged();
+      rowsMoved();
+      return;
+    }
+    switch (e.getType()) {
+      case TableModelEvent.INSERT -> {
+        int count = last - first + 1;
+        for (int i = 0; i < rows.length; i++) {
+          if (rows[i] >= first) rows[i] += count;
+        }
+        rowsMoved();
+      }
+      case TableModelEvent.DELETE -> {
+        int count = last - first + 1;
+        int kept = 0;
+        for (int row : rows) {
+          if (row < first) {
+            rows[kept++] = row;
+          } else if (row > last) {
+            rows[kept++] = row - count;
+          }
+        }
+        if (kept < rows.length) {
+          rows = Arrays.copyOf(rows, kept);
+          fireTableDataChanged();
+        }
+        rowsMoved();
+      }
+      default -> {
+        for (int i = 0; i < rows.length; i++) {
+          if (rows[i] >= first && rows[i] <= last) fireTableRowsUpdated(i, i);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,410 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * What returning visitors gave last time, so the entry form can fill itself in from a
+ * contact number or an ID.
+ *
+ * Profiles live in {@code visitor_profiles.txt}, one sealed line per visitor as of
+ * their latest visit, appended to when a visit is added or edited; a newer line for
+ * the same visitor replaces the older one. In memory there is only the index, from
+ * contact number and from ID (normalized as in {@link OpenVisitIndex}) to where each
+ * visitor's line is, plus an LRU of the {@link #CACHE_SIZE} profiles last asked for,
+ * so a lookup is a hash probe and at most one short read.
+ *
+ * The first start folds every day file in the catalog into the store on a background
+ * thread; later starts fold only the days since, as recorded by the {@code T} line.
+ * Only IDs typed in by hand are keys: "Driver's License" says nothing about who it is.
+ *
+ * Line layout (pipe separated, sealed with a checksum like journal records):
+ *   P|name|contact|presentedId|purpose|campusArea|lastCheckIn
+ *   T|last day folded in
+ */
+class VisitorProfileStore {
+  static final int CACHE_SIZE = 512;
+  private static final String HEADER = "# visitor profiles v1";
+  // rewrite the file once it holds this many lines per live profile
+  private static final int COMPACT_RATIO = 3;
+
+  /** One visitor as of their latest visit. */
+  static final class Profile {
+    final String visitorName;
+    final String contactNumber;
+    final String presentedId;
+    final String purpose;
+    final String campusArea;
+    final LocalDateTime lastCheckIn;
+
+    Profile(String visitorName, String contactNumber, String presentedId, String purpose,
+            String campusArea, LocalDateTime lastCheckIn) {
+      this.visitorName = visitorName;
+      this.contactNumber = contactNumber;
+      this.presentedId = presentedId;
+      this.purpose = purpose;
+      this.campusArea = campusArea;
+      this.lastCheckIn = lastCheckIn;
+    }
+
+    static Profile of(String[] text, LocalDateTime checkIn) {
+      // text: name, contact, presentedId, purpose, campus, as in the day files
+      return new Profile(text[0], text[1], text[2], text[3], text[4], checkIn);
+    }
+  }
+
+  /** Where a profile's line is, and how recent it is. */
+  private static final class Location {
+    final long offset;
+    final int length;
+    final LocalDateTime lastCheckIn;
+
+    Location(long offset, int length, LocalDateTime lastCheckIn) {
+      this.offset = offset;
+      this.length = length;
+      this.lastCheckIn = lastCheckIn;
+    }
+  }
+
+  private final File file;
+  private final DataCatalog catalog;
+  private Map<String, Location> byContact = new HashMap<>();
+  private Map<String, Location> byId = new HashMap<>();
+  private final Map<Long, Profile> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Profile> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+  // visits remembered before the file was indexed; written once it is
+  private List<Profile> pending = new ArrayList<>();
+  private RandomAccessFile out;
+  private LocalDate foldedThrough;
+  private int lines;
+
+  VisitorProfileStore(File file, DataCatalog catalog) {
+    this.file = file;
+    this.catalog = catalog;
+  }
+
+  /** Indexes the file and folds in the days it has not seen, on a background thread. */
+  void start() {
+    Thread builder = new Thread(this::build, "visitor-profile-builder");
+    builder.setDaemon(true);
+    builder.setPriority(Thread.MIN_PRIORITY);
+    builder.start();
+  }
+
+  /** Records the visit as the visitor's latest, unless a later one is already stored. */
+  synchronized void remember(Visitor v) {
+    if (v.getCheckIn() == null) return;
+    Profile p = new Profile(v.getVisitorName(), v.getContactNumber(), v.getPresentedId(), v.getPurpose(),
+        v.getCampusArea(), v.getCheckIn());
+    if (pending != null) {
+      pending.add(p);
+    } else if (out != null) {
+      store(p);
+    }
+  }
+
+  /**
+   * The profile whose ID matches what was typed, or failing that whose contact number
+   * does; null when there is none or the store is still being indexed.
+   */
+  synchronized Profile find(String typed) {
+    if (out == null) return null;
+    Location at = byId.get(OpenVisitIndex.idKey(typed));
+    if (at == null) at = byContact.get(OpenVisitIndex.contactKey(typed));
+    return at == null ? null : read(at);
+  }
+
+  synchronized int size() {
+    return byContact.size() + byId.size();
+  }
+
+  private void build() {
+    try {
+      Map<String, Location> contacts = new HashMap<>();
+      Map<String, Location> ids = new HashMap<>();
+      index(0, contacts, ids);
+      synchronized (this) {
+        byContact.putAll(contacts);
+        byId.putAll(ids);
+        out = new RandomAccessFile(file, "rw");
+        if (out.length() == 0) out.write((HEADER + System.lineSeparator()).getBytes());
+        for (Profile p : pending) store(p);
+        pending = null;
+      }
+      foldDays();
+      boolean due;
+      synchronized (this) {
+        due = lines > COMPACT_RATIO * Math.max(1000, byContact.size() + byId.size());
+      }
+      if (due) compact();
+    } catch (IOException e) {
+      System.err.println("Failed to build visitor profiles: " + e.getMessage());
+      synchronized (this) {
+        // lookups stay off rather than answering from half an index
+        pending = null;
+        byContact.clear();
+        byId.clear();
+      }
+    }
+  }
+
+  /** Reads the offsets of every line from {@code from} on, keeping the latest per key. */
+  private void index(long from, Map<String, Location> contacts, Map<String, Location> ids) throws IOException {
+    if (!file.isFile()) return;
+    CRC32C crc = new CRC32C();
+    FileInputStream in = new FileInputStream(file);
+    in.getChannel().position(from);
+    try (PipeLineReader reader = new PipeLineReader(in)) {
+      while (reader.nextLine()) {
+        if (reader.lineLength() == 0 || reader.startsWith('#')) continue;
+        lines++;
+        int payload = reader.checksummedLength(crc);
+        if (payload < 0) continue;
+        reader.split(payload);
+        if (reader.fieldEquals(0, "T")) {
+          foldedThrough = LocalDate.parse(reader.field(1));
+          continue;
+        }
+        Location at = new Location(from + reader.lineStart(), reader.lineLength(), reader.fieldAsTimestamp(6));
+        file(contacts, ids, reader.field(2), reader.field(3), at);
+      }
+    } catch (RuntimeException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    // a line cut off by a crash has no newline; start the next one on its own
+    if (file.length() > 0) {
+      try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+        f.seek(f.length() - 1);
+        if (f.read() != '\n') f.write(System.lineSeparator().getBytes());
+      }
+    }
+  }
+
+  /** Folds every day file after the last one folded, up to yesterday. */
+  private void foldDays() {
+    LocalDate yesterday = LocalDate.now().minusDays(1);
+    List<DataCatalog.Entry> days = catalog.between(foldedThrough == null ? null : foldedThrough.plusDays(1), null);
+    for (DataCatalog.Entry entry : days) {
+      Map<String, Profile> latest = new HashMap<>();
+      try {
+        VisitorJournal.replayRows(catalog.fileFor(entry), (id, text, checkIn, checkOut) -> {
+          if (checkIn == null) return;
+          Profile p = Profile.of(text, checkIn);
+          latest.merge(keyOf(p), p, (a, b) -> a.lastCheckIn.isAfter(b.lastCheckIn) ? a : b);
+        });
+      } catch (IOException e) {
+        System.err.println("Failed to read visitor profiles from " + entry.getFileName() + ": " + e.getMessage());
+        continue;
+      }
+      synchronized (this) {
+        for (Profile p : latest.values()) store(p);
+        // today's file is still growing; it is folded again next start, which is harmless
+        LocalDate date = entry.getDate();
+        if (date != null && !date.isAfter(yesterday) && (foldedThrough == null || date.isAfter(foldedThrough))) {
+          foldedThrough = date;
+          append(PipeLineReader.seal("T|" + date));
+        }
+      }
+    }
+  }
+
+  private static String keyOf(Profile p) {
+    String contact = OpenVisitIndex.contactKey(p.contactNumber);
+    return contact != null ? "c" + contact : "i" + OpenVisitIndex.idKey(p.presentedId);
+  }
+
+  /** Appends the profile and points its keys at it, unless they know a later visit. */
+  private void store(Profile p) {
+    String contact = OpenVisitIndex.contactKey(p.contactNumber);
+    String id = idKeyOf(p.presentedId);
+    if (contact == null && id == null) return;
+    if (!isNewer(byContact.get(contact), p) && !isNewer(byId.get(id), p)) return;
+    String line = line(p);
+    long offset = append(line);
+    if (offset < 0) return;
+    Location at = new Location(offset, line.getBytes().length, p.lastCheckIn);
+    file(byContact, byId, p.contactNumber, p.presentedId, at);
+    cache.put(offset, p);
+  }
+
+  private static String line(Profile p) {
+    return PipeLineReader.seal(String.join("|", "P",
+        PipeLineReader.escape(p.visitorName),
+        PipeLineReader.escape(p.contactNumber),
+        PipeLineReader.escape(p.presentedId),
+        PipeLineReader.escape(p.purpose),
+        PipeLineReader.escape(p.campusArea),
+        p.lastCheckIn.toString()));
+  }
+
+  private static boolean isNewer(Location known, Profile p) {
+    return known == null || p.lastCheckIn.isAfter(known.lastCheckIn);
+  }
+
+  private static void file(Map<String, Location> contacts, Map<String, Location> ids, String contactNumber,
+                           String presentedId, Location at) {
+    String contact = OpenVisitIndex.contactKey(contactNumber);
+    if (contact != null) contacts.merge(contact, at, VisitorProfileStore::later);
+    String id = idKeyOf(presentedId);
+    if (id != null) ids.merge(id, at, VisitorProfileStore::later);
+  }
+
+  private static Location later(Location a, Location b) {
+    return b.lastCheckIn.isBefore(a.lastCheckIn) ? a : b;
+  }
+
+  /** The ID as a key, or null for the generic ID types the form offers. */
+  private static String idKeyOf(String presentedId) {
+    return VisitorFormPanel.isIdType(presentedId) ? null : OpenVisitIndex.idKey(presentedId);
+  }
+
+  /** Appends a sealed line; returns its offset, or -1 when it could not be written. */
+  private long append(String line) {
+    try {
+      long offset = out.length();
+      out.seek(offset);
+      // a profile is rebuilt from the day files if lost, so no force here
+      out.write((line + System.lineSeparator()).getBytes());
+      lines++;
+      return offset;
+    } catch (IOException e) {
+      System.err.println("Failed to save visitor profile: " + e.getMessage());
+      return -1;
+    }
+  }
+
+  private Profile read(Location at) {
+    Profile cached = cache.get(at.offset);
+    if (cached != null) return cached;
+    Profile p = read(out, at);
+    if (p != null) cache.put(at.offset, p);
+    return p;
+  }
+
+  private static Profile read(RandomAccessFile from, Location at) {
+    byte[] bytes = new byte[at.length];
+    try {
+      from.seek(at.offset);
+      from.readFully(bytes);
+      PipeLineReader reader = new PipeLineReader(new ByteArrayInputStream(bytes));
+      if (!reader.nextLine()) return null;
+      int payload = reader.checksummedLength(new CRC32C());
+      if (payload < 0) return null;
+      reader.split(payload);
+      return new Profile(reader.field(1), reader.field(2), reader.field(3), reader.field(4),
+          reader.field(5), reader.fieldAsTimestamp(6));
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Failed to read visitor profile: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Rewrites the file with only the lines the index points at; the rename keeps it
+   * whole. The live lines are read, written out and indexed without the lock, so
+   * lookups and new visits carry on meanwhile. Under the lock, only the lines they
+   * appended are copied over and indexed before the new file and maps replace the old.
+   */
+  private void compact() {
+    List<Location> locations;
+    long prefixLength;
+    LocalDate folded;
+    synchronized (this) {
+      if (out == null) return;
+      locations = new ArrayList<>(byContact.values());
+      locations.addAll(byId.values());
+      folded = foldedThrough;
+      try {
+        prefixLength = out.length();
+      } catch (IOException e) {
+        System.err.println("Failed to compact visitor profiles: " + e.getMessage());
+        return;
+      }
+    }
+    Map<Long, Profile> live = new LinkedHashMap<>();
+    Map<String, Location> contacts = new HashMap<>();
+    Map<String, Location> ids = new HashMap<>();
+    int written = 0;
+    long snapshotLength;
+    File temp = new File(file.getPath() + ".tmp");
+    try {
+      try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+        for (Location at : locations) {
+          if (live.containsKey(at.offset)) continue;
+          Profile p = read(in, at);
+          if (p != null) live.put(at.offset, p);
+        }
+      }
+      // the new file is indexed as it is laid out, so it never has to be read back
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      bytes.write((HEADER + System.lineSeparator()).getBytes());
+      if (folded != null) {
+        bytes.write((PipeLineReader.seal("T|" + folded) + System.lineSeparator()).getBytes());
+        written++;
+      }
+      for (Profile p : live.values()) {
+        byte[] line = line(p).getBytes();
+        file(contacts, ids, p.contactNumber, p.presentedId, new Location(bytes.size(), line.length, p.lastCheckIn));
+        bytes.write(line);
+        bytes.write(System.lineSeparator().getBytes());
+        written++;
+      }
+      snapshotLength = bytes.size();
+      try (FileOutputStream tempOut = new FileOutputStream(temp)) {
+        bytes.writeTo(tempOut);
+        tempOut.getChannel().force(true);
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to compact visitor profiles: " + e.getMessage());
+      return;
+    }
+    synchronized (this) {
+      if (out == null) return;
+      try {
+        // lines appended since the snapshot are newer than anything before them
+        try (FileChannel target = new FileOutputStream(temp, true).getChannel()) {
+          long tail = out.length() - prefixLength;
+          long copied = 0;
+          while (copied < tail) {
+            copied += out.getChannel().transferTo(prefixLength + copied, tail - copied, target);
+          }
+          target.force(true);
+        }
+        out.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        byContact = contacts;
+        byId = ids;
+        cache.clear();
+        lines = written;
+        index(snapshotLength, byContact, byId);
+      } catch (IOException e) {
+        System.err.println("Failed to compact visitor profiles: " + e.getMessage());
+      }
+      try {
+        out.close();
+        out = new RandomAccessFile(file, "rw");
+      } catch (IOException e) {
+        System.err.println("Failed to reopen visitor profiles: " + e.getMessage());
+        out = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,387 @@
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An advanced log search, parsed once into a predicate tree.
+ *
+ * Terms are {@code field:value} (contains), {@code field=value} (whole value) or a
+ * bare value searched in every column; values with spaces go in double quotes. The
+ * fields are name, contact, id, purpose, area, guard, gate, checkin and checkout.
+ * The two time fields take {@code none} or {@code any}, a date ({@code 2026-03-14})
+ * or a time of day ({@code 08:00}, {@code 8:30pm}), compared with {@code : = > >= < <=}.
+ * Terms are joined with AND (or just a space) and OR, negated with NOT or a leading
+ * {@code -}, and grouped with parentheses; the keywords must be upper case.
+ *
+ * <pre>gate:"Gate A" AND checkout:none AND checkin&gt;=08:00</pre>
+ *
+ * The tree only says which rows match. {@link VisitorSearchIndex} decides which of
+ * its indexes to start from and checks the remaining terms row by row.
+ */
+final class VisitorQuery {
+  /** A time the row does not have, as the search index stores it. */
+  static final long NO_TIME = Long.MIN_VALUE;
+  static final int CHECK_IN_COLUMN = 7;
+  static final int CHECK_OUT_COLUMN = 8;
+
+  private static final String[] FIELDS = {
+    "name", "contact", "id", "purpose", "area", "guard", "gate", "checkin", "checkout"
+  };
+  private static final Pattern FIELD = Pattern.compile("([A-Za-z]+)(>=|<=|[:=<>])");
+  private static final Pattern CLOCK = Pattern.compile("(\\d{1,2})(?::(\\d{2}))?\\s*(am|pm)?");
+  private static final int DAY_SECONDS = 86400;
+
+  /** One node of the predicate tree. */
+  abstract static class Node {
+    /**
+     * Whether a row matches, given its lower-cased cell text and its times in epoch
+     * seconds (wall clock read as UTC, {@link #NO_TIME} when missing).
+     */
+    abstract boolean test(String[] text, long checkIn, long checkOut);
+  }
+
+  /** Rows matching every part. */
+  static final class And extends Node {
+    final List<Node> parts;
+
+    And(List<Node> parts) {
+      this.parts = parts;
+    }
+
+    @Override
+    boolean test(String[] text, long checkIn, long checkOut) {
+      for (Node part : parts) {
+        if (!part.test(text, checkIn, checkOut)) return false;
+      }
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return join(parts, " AND ");
+    }
+  }
+
+  /** Rows matching any part. */
+  static final class Or extends Node {
+    final List<Node> parts;
+
+    Or(List<Node> parts) {
+      this.parts = parts;
+    }
+
+    @Override
+    boolean test(String[] text, long checkIn, long checkOut) {
+      for (Node part : parts) {
+        if (part.test(text, checkIn, checkOut)) return true;
+      }
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return join(parts, " OR ");
+    }
+  }
+
+  static final class Not extends Node {
+    final Node part;
+
+    Not(Node part) {
+      this.part = part;
+    }
+
+    @Override
+    boolean test(String[] text, long checkIn, long checkOut) {
+      return !part.test(text, checkIn, checkOut);
+    }
+
+    @Override
+    public String toString() {
+      return "NOT " + part;
+    }
+  }
+
+  /** A column (or any column, for -1) containing or equal to a lower-cased value. */
+  static final class Text extends Node {
+    final int column;
+    final String value;
+    final boolean exact;
+
+    Text(int column, String value, boolean exact) {
+      this.column = column;
+      this.value = value;
+      this.exact = exact;
+    }
+
+    boolean accepts(String cell) {
+      return exact ? cell.equals(value) : cell.contains(value);
+    }
+
+    @Override
+    boolean test(String[] text, long checkIn, long checkOut) {
+      if (column >= 0) return accepts(text[column]);
+      for (String cell : text) {
+        if (accepts(cell)) return true;
+      }
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return (column < 0 ? "" : FIELDS[column] + (exact ? "=" : ":")) + "\"" + value + "\"";
+    }
+  }
+
+  /**
+   * Check-in or check-out time within {@code [from, until)}: epoch seconds, or seconds
+   * into the day when {@code clock} is set. {@code none} is a missing time.
+   */
+  static final class Time extends Node {
+    final boolean checkOut;
+    final boolean none;
+    final boolean clock;
+    final long from;
+    final long until;
+
+    Time(boolean checkOut, boolean none, boolean clock, long from, long until) {
+      this.checkOut = checkOut;
+      this.none = none;
+      this.clock = clock;
+      this.from = from;
+      this.until = until;
+    }
+
+    @Override
+    boolean test(String[] text, long checkIn, long checkOut) {
+      long time = this.checkOut ? checkOut : checkIn;
+      if (time == NO_TIME) return none;
+      if (none) return false;
+      long value = clock ? Math.floorMod(time, DAY_SECONDS) : time;
+      return value >= from && value < until;
+    }
+
+    @Override
+    public String toString() {
+      String field = checkOut ? "checkout" : "checkin";
+      if (none) return field + ":none";
+      return field + (clock ? "@clock[" : "[") + from + "," + until + ")";
+    }
+  }
+
+  private final String source;
+  private final Node root;
+
+  private VisitorQuery(String source, Node root) {
+    this.source = source;
+    this.root = root;
+  }
+
+  /** Parses a query; throws {@link IllegalArgumentException} saying what is wrong. */
+  static VisitorQuery parse(String source) {
+    Parser parser = new Parser(source);
+    Node root = parser.parseOr();
+    parser.skipSpace();
+    if (parser.at < source.length()) {
+      throw new IllegalArgumentException("Unexpected '" + source.charAt(parser.at) + "' at " + (parser.at + 1));
+    }
+    return new VisitorQuery(source, root);
+  }
+
+  Node getRoot() {
+    return root;
+  }
+
+  String getSource() {
+    return source;
+  }
+
+  boolean test(String[] text, long checkIn, long checkOut) {
+    return root.test(text, checkIn, checkOut);
+  }
+
+  /** The tree written out in one canonical form, so equal queries compare equal. */
+  @Override
+  public String toString() {
+    return root.toString();
+  }
+
+  private static String join(List<Node> parts, String glue) {
+    StringBuilder sb = new StringBuilder("(");
+    for (int i = 0; i < parts.size(); i++) {
+      if (i > 0) sb.append(glue);
+      sb.append(parts.get(i));
+    }
+    return sb.append(')').toString();
+  }
+
+  /** Recursive descent over the query text. */
+  private static final class Parser {
+    private final String text;
+    private int at;
+
+    Parser(String text) {
+      this.text = text;
+    }
+
+    Node parseOr() {
+      List<Node> parts = new ArrayList<>();
+      parts.add(parseAnd());
+      while (keyword("OR")) parts.add(parseAnd());
+      return parts.size() == 1 ? parts.get(0) : new Or(parts);
+    }
+
+    private Node parseAnd() {
+      List<Node> parts = new ArrayList<>();
+      parts.add(parseNot());
+      while (true) {
+        if (keyword("AND")) {
+          parts.add(parseNot());
+          continue;
+        }
+        skipSpace();
+        // a space between terms also means AND
+        if (at >= text.length() || text.charAt(at) == ')' || lookingAtKeyword("OR")) break;
+        parts.add(parseNot());
+      }
+      return parts.size() == 1 ? parts.get(0) : new And(parts);
+    }
+
+    private Node parseNot() {
+      skipSpace();
+      if (keyword("NOT")) return new Not(parseNot());
+      if (at < text.length() && text.charAt(at) == '-') {
+        at++;
+        return new Not(parseNot());
+      }
+      return parseTerm();
+    }
+
+    private Node parseTerm() {
+      skipSpace();
+      if (at >= text.length()) throw new IllegalArgumentException("Query ends where a term was expected");
+      if (text.charAt(at) == '(') {
+        at++;
+        Node inner = parseOr();
+        skipSpace();
+        if (at >= text.length() || text.charAt(at) != ')') {
+          throw new IllegalArgumentException("Missing ')' at " + (at + 1));
+        }
+        at++;
+        return inner;
+      }
+      Matcher m = FIELD.matcher(text).region(at, text.length());
+      if (m.lookingAt()) {
+        int column = column(m.group(1));
+        String op = m.group(2);
+        at = m.end();
+        String value = value();
+        if (column == CHECK_IN_COLUMN || column == CHECK_OUT_COLUMN) {
+          return time(column == CHECK_OUT_COLUMN, op, value);
+        }
+        if (!op.equals(":") && !op.equals("=")) {
+          throw new IllegalArgumentException(FIELDS[column] + " can only be compared with ':' or '='");
+        }
+        return new Text(column, value.toLowerCase(Locale.ROOT), op.equals("="));
+      }
+      return new Text(-1, value().toLowerCase(Locale.ROOT), false);
+    }
+
+    /** A quoted string or a bare word. */
+    private String value() {
+      if (at < text.length() && text.charAt(at) == '"') {
+        int close = text.indexOf('"', at + 1);
+        if (close < 0) throw new IllegalArgumentException("Missing closing quote for the value at " + (at + 1));
+        String value = text.substring(at + 1, close);
+        at = close + 1;
+        return value;
+      }
+      int start = at;
+      while (at < text.length() && !Character.isWhitespace(text.charAt(at))
+          && text.charAt(at) != '(' && text.charAt(at) != ')') {
+        at++;
+      }
+      if (start == at) throw new IllegalArgumentException("Missing value at " + (at + 1));
+      return text.substring(start, at);
+    }
+
+    private static int column(String name) {
+      String lower = name.toLowerCase(Locale.ROOT);
+      for (int i = 0; i < FIELDS.length; i++) {
+        if (FIELDS[i].equals(lower)) return i;
+      }
+      throw new IllegalArgumentException("Unknown field '" + name + "'; use one of " + String.join(", ", FIELDS));
+    }
+
+    private static Node time(boolean checkOut, String op, String value) {
+      String lower = value.trim().toLowerCase(Locale.ROOT);
+      boolean equality = op.equals(":") || op.equals("=");
+      if (lower.equals("none") || lower.equals("any")) {
+        if (!equality) throw new IllegalArgumentException("'" + value + "' can only follow ':' or '='");
+        Node none = new Time(checkOut, true, false, 0, 0);
+        return lower.equals("none") ? none : new Not(none);
+      }
+      long start;
+      long step;
+      long min;
+      long max;
+      boolean clock;
+      Matcher m = CLOCK.matcher(lower);
+      if (m.matches()) {
+        int hour = Integer.parseInt(m.group(1));
+        int minute = m.group(2) == null ? 0 : Integer.parseInt(m.group(2));
+        if (m.group(3) != null) {
+          if (hour < 1 || hour > 12) throw new IllegalArgumentException("Bad time '" + value + "'");
+          hour = hour % 12 + (m.group(3).equals("pm") ? 12 : 0);
+        } else if (m.group(2) == null) {
+          throw new IllegalArgumentException("Bad time '" + value + "'; write it as 08:00 or 8am");
+        }
+        if (hour > 23 || minute > 59) throw new IllegalArgumentException("Bad time '" + value + "'");
+        clock = true;
+        start = hour * 3600L + minute * 60L;
+        step = 60;
+        min = 0;
+        max = DAY_SECONDS;
+      } else {
+        try {
+          start = LocalDate.parse(lower).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+          throw new IllegalArgumentException("Bad date or time '" + value + "'; use 2026-03-14, 08:00, none or any");
+        }
+        clock = false;
+        step = DAY_SECONDS;
+        min = Long.MIN_VALUE + 1;
+        max = Long.MAX_VALUE;
+      }
+      return switch (op) {
+        case ">" -> new Time(checkOut, false, clock, start + step, max);
+        case ">=" -> new Time(checkOut, false, clock, start, max);
+        case "<" -> new Time(checkOut, false, clock, min, start);
+        case "<=" -> new Time(checkOut, false, clock, min, start + step);
+        default -> new Time(checkOut, false, clock, start, start + step);
+      };
+    }
+
+    private boolean keyword(String word) {
+      skipSpace();
+      if (!lookingAtKeyword(word)) return false;
+      at += word.length();
+      return true;
+    }
+
+    private boolean lookingAtKeyword(String word) {
+      int end = at + word.length();
+      return text.startsWith(word, at)
+          && (end == text.length() || Character.isWhitespace(text.charAt(end)) || text.charAt(end) == '(');
+    }
+
+    void skipSpace() {
+      while (at < text.length() && Character.isWhitespace(text.charAt(at))) at++;
+    }
+  }
+}
@@ -0,0 +1,189 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Runs date-range queries across every visitor day file.
+ *
+ * Each {@code visitor_logs_yyyy-MM-dd.txt} file is a partition holding the visits
+ * checked in on that date, so a range query first drops the partitions that cannot
+ * match using the dates listed in the {@link DataCatalog}. The remaining days are read in
+ * parallel on a fork/join pool (from their archive when one is fresh), filtered
+ * row by row, and handed to the listener in day order as soon as every earlier day
+ * is done.
+ */
+class VisitorQueryEngine {
+  /** Receives the matches of a scan; called from pool threads. */
+  interface Listener {
+    void batch(RangeScan scan, List<Visitor> matches);
+
+    void finished(RangeScan scan);
+  }
+
+  /** A running range query. */
+  static final class RangeScan {
+    private final LocalDate from;
+    private final LocalDate to;
+    private final boolean useCheckOut;
+    private final Function<String, Guard> guardLookup;
+    private final int partitions;
+    private volatile boolean cancelled;
+
+    private RangeScan(LocalDate from, LocalDate to, boolean useCheckOut, Function<String, Guard> guardLookup,
+                      int partitions) {
+      this.from = from;
+      this.to = to;
+      this.useCheckOut = useCheckOut;
+      this.guardLookup = guardLookup;
+      this.partitions = partitions;
+    }
+
+    /** True when the visit falls in the range on the chosen date. */
+    boolean matches(Visitor v) {
+      LocalDateTime dt = useCheckOut ? v.getCheckOut() : v.getCheckIn();
+      if (dt == null) return false;
+      LocalDate d = dt.toLocalDate();
+      if (from != null && d.isBefore(from)) return false;
+      return to == null || !d.isAfter(to);
+    }
+
+    void cancel() {
+      cancelled = true;
+    }
+
+    boolean isCancelled() {
+      return cancelled;
+    }
+
+    int getPartitionCount() {
+      return partitions;
+    }
+  }
+
+  private final DataCatalog catalog;
+  private final ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+  VisitorQueryEngine(DataCatalog catalog) {
+    this.catalog = catalog;
+  }
+
+  /**
+   * Day files that may hold visits in the range, oldest first. Either bound may be
+   * null for an open range.
+   */
+  List<File> partitions(LocalDate from, LocalDate to, boolean useCheckOut) {
+    // an open visit stays in the live view, and can be checked out, for the carry-over days
+    LocalDate first = from == null ? null : (useCheckOut ? from.minusDays(VisitorTableModel.CARRY_OVER_DAYS) : from);
+    // nothing checks out before it checks in, so later days never match either way
+    List<File> days = new ArrayList<>();
+    for (DataCatalog.Entry entry : catalog.between(first, to)) {
+      days.add(catalog.fileFor(entry));
+    }
+    return days;
+  }
+
+  /**
+   * Starts a range query in the background and returns at once. The guard lookup is
+   * called from pool threads, so it should not read lists the event thread edits.
+   */
+  RangeScan scan(LocalDate from, LocalDate to, boolean useCheckOut, Function<String, Guard> guardLookup,
+                 Listener listener) {
+    List<File> days = partitions(from, to, useCheckOut);
+    RangeScan scan = new RangeScan(from, to, useCheckOut, guardLookup, days.size());
+    if (days.isEmpty()) {
+      listener.finished(scan);
+      return scan;
+    }
+    pool.execute(new ScanTask(days, 0, days.size(), scan, new Publisher(scan, days.size(), listener)));
+    return scan;
+  }
+
+  /** Splits the partition list in halves until each task reads a single day. */
+  private static final class ScanTask extends RecursiveAction {
+    private final List<File> days;
+    private final int start;
+    private final int end;
+    private final RangeScan scan;
+    private final Publisher publisher;
+
+    ScanTask(List<File> days, int start, int end, RangeScan scan, Publisher publisher) {
+      this.days = days;
+      this.start = start;
+      this.end = end;
+      this.scan = scan;
+      this.publisher = publisher;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start > 1) {
+        int mid = (start + end) >>> 1;
+        invokeAll(new ScanTask(days, start, mid, scan, publisher), new ScanTask(days, mid, end, scan, publisher));
+        return;
+      }
+      List<Visitor> matches = new ArrayList<>();
+      if (!scan.isCancelled()) {
+        File day = days.get(start);
+        try {
+          for (Visitor v : read(day, scan.guardLookup)) {
+            if (scan.matches(v)) matches.add(v);
+          }
+        } catch (IOException e) {
+          System.err.println("Skipping " + day.getName() + " in range query: " + e.getMessage());
+        }
+      }
+      publisher.publish(start, matches);
+    }
+  }
+
+  /** Hands finished days to the listener in partition order. */
+  private static final class Publisher {
+    private final RangeScan scan;
+    private final List<List<Visitor>> done;
+    private final Listener listener;
+    private int next;
+
+    Publisher(RangeScan scan, int partitions, Listener listener) {
+      this.scan = scan;
+      this.listener = listener;
+      this.done = new ArrayList<>(partitions);
+      for (int i = 0; i < partitions; i++) done.add(null);
+    }
+
+    synchronized void publish(int index, List<Visitor> matches) {
+      done.set(index, matches);
+      while (next < done.size() && done.get(next) != null) {
+        List<Visitor> batch = done.get(next);
+        done.set(next, List.of());
+        next++;
+        if (!scan.isCancelled() && !batch.isEmpty()) listener.batch(scan, batch);
+      }
+      if (next == done.size()) listener.finished(scan);
+    }
+  }
+
+  /** Reads one day without repairing it; the writer may still be appending to it. */
+  private static List<Visitor> read(File day, Function<String, Guard> guardLookup) throws IOException {
+    if (VisitorArchive.isClosedDay(day)) {
+      List<Visitor> archived = VisitorArchive.loadIfFresh(day, guardLookup);
+      if (archived != null) return archived;
+    }
+    List<Visitor> visitors = new ArrayList<>();
+    LocalDate date = VisitorJournal.dateFromFileName(day.getName());
+    VisitorJournal.replayRows(day, (id, text, checkIn, checkOut) -> {
+      // name, contact, presentedId, purpose, campus, guard, gate
+      Visitor v = Visitor.fromCsvFields(text[0], text[1], text[2], text[3], text[4], guardLookup.apply(text[5]),
+          checkIn, checkOut);
+      v.assignRecordId(id);
+      v.assignLogDate(date);
+      visitors.add(v);
+    });
+    return visitors;
+  }
+}
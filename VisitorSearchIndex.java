@@ -0,0 +1,861 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+/**
+ * Trigram index over the text of every column of the visitor table, and the
+ * background thread that filters and pages the log with it.
+ *
+ * Each row's cell text is lower-cased once when the row is indexed, and every three
+ * character run of it is posted under that row. A substring query intersects the
+ * posting lists of its own trigrams, smallest first, and only the surviving rows are
+ * checked with {@code contains}. Queries shorter than a trigram check the stored
+ * lower-cased text of every row, which still skips the formatting and case folding.
+ *
+ * The index follows the model through its table events, so adds, edits, check-outs
+ * and removals update just the rows they touch. The event thread only hands the
+ * touched visitors over; the index itself lives on the "visitor-log-search" thread,
+ * where searches queue behind the updates that came before them. A search runs the
+ * text match, the date range and the paging there and posts one {@link Page} back to
+ * the event thread, unless it was cancelled first.
+ *
+ * Inside the index a row is known by a slot number handed out in model order and
+ * never reused, so removing a row only takes its slot out of the lists it is in
+ * instead of renumbering all of them. Slots are turned back into model rows only for
+ * the page that is shown, and packed again once enough of them are empty.
+ *
+ * The date filter does not look at rows one by one either. Check-in and check-out
+ * times are kept as epoch seconds in two arrays sorted by time, so a date range is
+ * two binary searches; the rows in that span are then intersected with the text
+ * match.
+ *
+ * Campus area, guard and gate only ever hold a few dozen distinct values, so each
+ * of those columns also keeps a {@link RowBitmap} per value. The presented ID is not
+ * one of them: an ID typed under Others is close to unique per row, and is left to
+ * the trigram index. A search
+ * on one of them tests each distinct value once and ORs the bitmaps of the ones that
+ * match, and a date range is ANDed in as another bitmap.
+ *
+ * A {@link VisitorQuery} is planned against these indexes. Each term that an index
+ * can answer (a category value, a date span of the time index, a text term of at
+ * least a trigram) is sized first without building anything; the query starts from
+ * the smallest of them, ANDs in the others that are still selective, and checks every
+ * term of the tree only on the slots that are left. A query no index can narrow, such
+ * as a bare NOT or a time of day, is checked on every row.
+ *
+ * A fuzzy name search goes to a {@link FuzzyNameIndex} of folded and phonetically
+ * coded name words instead, and its page lists the closest names first.
+ *
+ * While the admin keeps typing, each query usually contains the one before it
+ * ("mar", "mari", "maria"), so every match must be among the previous matches. The
+ * last text match is kept until the rows change, and such a query only re-checks it.
+ *
+ * Admins also keep going back to the same few filters during a shift ("gate a" with
+ * today's date, "science high" this week). The full match of the last
+ * {@link #CACHE_SIZE} filters is kept, least recently used dropped first, so going
+ * back to one, or turning its pages, costs no matching at all. The cached matches are
+ * kept right as the model changes instead of being thrown away: a new or edited row is
+ * checked against each cached filter and added to the ones it passes, and a removed
+ * row is taken out of all of them.
+ */
+class VisitorSearchIndex implements TableModelListener {
+  private static final int GRAM = 3;
+  // campus area, guard on duty, gate entered
+  private static final int[] CATEGORY_COLUMNS = {4, 5, 6};
+  // rows between checks for a cancelled search
+  private static final int CANCEL_CHECK_MASK = 4095;
+  // empty slots tolerated before they are packed away
+  private static final int MIN_DEAD_SLOTS = 1024;
+  // filters whose full match is kept
+  private static final int CACHE_SIZE = 16;
+
+  /** What the log panel is filtering by. */
+  static final class Filter {
+    private final String query;
+    private final VisitorQuery structured;
+    private final boolean fuzzy;
+    private final int column;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final boolean useCheckOut;
+    private final int pageSize;
+    private final int page;
+
+    /** A column of -1 searches every column; a page size of 0 shows every match. */
+    Filter(String query, int column, LocalDate from, LocalDate to, boolean useCheckOut, int pageSize, int page) {
+      this(query, null, false, column, from, to, useCheckOut, pageSize, page);
+    }
+
+    /** Filters by a parsed query instead of a text and column. */
+    Filter(VisitorQuery query, LocalDate from, LocalDate to, boolean useCheckOut, int pageSize, int page) {
+      this(null, query, false, -1, from, to, useCheckOut, pageSize, page);
+    }
+
+    private Filter(String query, VisitorQuery structured, boolean fuzzy, int column, LocalDate from, LocalDate to,
+                   boolean useCheckOut, int pageSize, int page) {
+      this.query = query == null ? "" : query;
+      this.structured = structured;
+      this.fuzzy = fuzzy;
+      this.column = column;
+      this.from = from;
+      this.to = to;
+      this.useCheckOut = useCheckOut;
+      this.pageSize = pageSize;
+      this.page = page;
+    }
+
+    /** Visitor names that are spelled or sound close to the query, closest first. */
+    static Filter fuzzyName(String query, LocalDate from, LocalDate to, boolean useCheckOut, int pageSize, int page) {
+      return new Filter(query, null, true, 0, from, to, useCheckOut, pageSize, page);
+    }
+  }
+
+  /** One page of a finished search. */
+  static final class Page {
+    private final int[] rows;
+    private final int totalMatches;
+    private final int page;
+    private final int totalPages;
+    private final long version;
+
+    private Page(int[] rows, int totalMatches, int page, int totalPages, long version) {
+      this.rows = rows;
+      this.totalMatches = totalMatches;
+      this.page = page;
+      this.totalPages = totalPages;
+      this.version = version;
+    }
+
+    /** Model rows on this page, in row order, or closest first for a fuzzy name search. */
+    int[] getRows() {
+      return rows;
+    }
+
+    int getTotalMatches() {
+      return totalMatches;
+    }
+
+    /** The page shown, pulled back to the last one when the request was past it. */
+    int getPage() {
+      return page;
+    }
+
+    int getTotalPages() {
+      return totalPages;
+    }
+  }
+
+  /** A queued or running search; cancelling it means its page is never posted. */
+  static final class Search {
+    private volatile boolean cancelled;
+
+    void cancel() {
+      cancelled = true;
+    }
+
+    boolean isCancelled() {
+      return cancelled;
+    }
+  }
+
+  /** Sorted, duplicate-free slots holding one trigram. */
+  private static final class Postings {
+    private int[] slots = new int[4];
+    private int size;
+
+    void add(int slot) {
+      if (size > 0 && slots[size - 1] < slot) {
+        append(slot);
+        return;
+      }
+      int at = Arrays.binarySearch(slots, 0, size, slot);
+      if (at >= 0) return;
+      at = -at - 1;
+      if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+      System.arraycopy(slots, at, slots, at + 1, size - at);
+      slots[at] = slot;
+      size++;
+    }
+
+    private void append(int slot) {
+      if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+      slots[size++] = slot;
+    }
+
+    void remove(int slot) {
+      int at = Arrays.binarySearch(slots, 0, size, slot);
+      if (at < 0) return;
+      System.arraycopy(slots, at + 1, slots, at, size - at - 1);
+      size--;
+    }
+  }
+
+  /** Times of one kind, sorted by epoch second, with the slot each came from. */
+  private static final class TimeIndex {
+    private long[] times = new long[16];
+    private int[] slots = new int[16];
+    private int size;
+
+    void add(long time, int slot) {
+      // rows mostly arrive in time order, so this is usually an append
+      int at = size;
+      if (size > 0 && times[size - 1] > time) {
+        at = Arrays.binarySearch(times, 0, size, time);
+        at = at < 0 ? -at - 1 : at;
+      }
+      if (size == times.length) {
+        times = Arrays.copyOf(times, size * 2);
+        slots = Arrays.copyOf(slots, size * 2);
+      }
+      System.arraycopy(times, at, times, at + 1, size - at);
+      System.arraycopy(slots, at, slots, at + 1, size - at);
+      times[at] = time;
+      slots[at] = slot;
+      size++;
+    }
+
+    void remove(long time, int slot) {
+      for (int i = lowerBound(time); i < size && times[i] == time; i++) {
+        if (slots[i] == slot) {
+          System.arraycopy(times, i + 1, times, i, size - i - 1);
+          System.arraycopy(slots, i + 1, slots, i, size - i - 1);
+          size--;
+          return;
+        }
+      }
+    }
+
+    /** Marks the slots with a time in {@code [from, until)}. */
+    void slotsBetween(long from, long until, BitSet into) {
+      for (int i = lowerBound(from); i < size && times[i] < until; i++) into.set(slots[i]);
+    }
+
+    /** How many times fall in {@code [from, until)}. */
+    int count(long from, long until) {
+      return Math.max(0, lowerBound(until) - lowerBound(from));
+    }
+
+    void clear() {
+      size = 0;
+    }
+
+    /** First position whose time is at least {@code time}. */
+    private int lowerBound(long time) {
+      int lo = 0;
+      int hi = size;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (times[mid] < time) lo = mid + 1; else hi = mid;
+      }
+      return lo;
+    }
+  }
+
+  /**
+   * What the index holds for one model row. Taken on the event thread when the row
+   * changes, so the search thread never reads a {@link Visitor} that is being edited.
+   */
+  private static final class Row {
+    // lower-cased cell text, as it was indexed
+    final String[] text;
+    final long checkIn;
+    final long checkOut;
+
+    Row(Visitor v) {
+      text = cellText(v);
+      checkIn = epochSecond(v.getCheckIn());
+      checkOut = epochSecond(v.getCheckOut());
+    }
+  }
+
+  /** The sorted slots matching one filter, whatever its page. */
+  private static final class CachedMatch {
+    final String query;
+    final VisitorQuery structured;
+    final int column;
+    final boolean dated;
+    final long from;
+    final long until;
+    final boolean useCheckOut;
+    int[] slots;
+    int size;
+
+    CachedMatch(String query, Filter filter, int[] slots) {
+      this.query = query;
+      this.structured = filter.structured;
+      this.column = filter.column;
+      this.dated = filter.from != null || filter.to != null;
+      this.from = filter.from == null ? Long.MIN_VALUE : startOf(filter.from);
+      this.until = filter.to == null ? Long.MAX_VALUE : startOf(filter.to.plusDays(1));
+      this.useCheckOut = filter.useCheckOut;
+      this.slots = slots;
+      this.size = slots.length;
+    }
+
+    /** Whether the row passes this filter, judged the way a search would. */
+    boolean accepts(Row row) {
+      if (structured != null) {
+        if (!structured.test(row.text, row.checkIn, row.checkOut)) return false;
+      } else if (!query.isEmpty() && !contains(row.text, query, column)) {
+        return false;
+      }
+      if (!dated) return true;
+      long time = useCheckOut ? row.checkOut : row.checkIn;
+      return time != NO_TIME && time >= from && time < until;
+    }
+
+    void add(int slot) {
+      int at = size > 0 && slots[size - 1] < slot ? size : Arrays.binarySearch(slots, 0, size, slot);
+      if (at < 0) {
+        at = -at - 1;
+      } else if (at < size) {
+        return;
+      }
+      if (size == slots.length) slots = Arrays.copyOf(slots, Math.max(4, size * 2));
+      System.arraycopy(slots, at, slots, at + 1, size - at);
+      slots[at] = slot;
+      size++;
+    }
+
+    void remove(int slot) {
+      int at = Arrays.binarySearch(slots, 0, size, slot);
+      if (at < 0) return;
+      System.arraycopy(slots, at + 1, slots, at, size - at - 1);
+      size--;
+    }
+  }
+
+  private static final long NO_TIME = VisitorQuery.NO_TIME;
+
+  private final VisitorTableModel model;
+  private final ExecutorService executor;
+  // table events seen; touched on the event thread only
+  private long version;
+
+  // everything below is owned by the search thread
+  private final Map<Long, Postings> grams = new HashMap<>();
+  // by slot; null once the row is removed
+  private final List<Row> rows = new ArrayList<>();
+  // slot to model row (-1 once removed), and model row to slot (ascending, as slots
+  // are handed out in model order)
+  private int[] rowOfSlot = new int[16];
+  private int[] slotOfRow = new int[16];
+  private int rowCount;
+  private final TimeIndex checkIns = new TimeIndex();
+  private final TimeIndex checkOuts = new TimeIndex();
+  // per category column, the slots holding each distinct lower-cased value
+  private final List<Map<String, RowBitmap>> categories = new ArrayList<>();
+  private final FuzzyNameIndex names = new FuzzyNameIndex();
+  // recent filters by cache key, least recently used first
+  private final Map<String, CachedMatch> cache = new LinkedHashMap<>(CACHE_SIZE * 2, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedMatch> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+  // written by the search thread, read by the dashboard
+  private volatile long cacheHits;
+  private volatile long cacheMisses;
+  // the most recent text match, reusable while no row has changed since
+  private String lastQuery;
+  private int lastColumn;
+  private int[] lastMatches;
+
+  VisitorSearchIndex(VisitorTableModel model) {
+    this.model = model;
+    executor = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "visitor-log-search");
+      t.setDaemon(true);
+      return t;
+    });
+    for (int i = 0; i < CATEGORY_COLUMNS.length; i++) categories.add(new HashMap<>());
+    List<Row> all = snapshot(0, model.getRowCount() - 1);
+    executor.execute(() -> rebuild(all));
+    model.addTableModelListener(this);
+  }
+
+  @Override
+  public void tableChanged(TableModelEvent e) {
+    version++;
+    int first = e.getFirstRow();
+    int last = e.getLastRow();
+    if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+      List<Row> all = snapshot(0, model.getRowCount() - 1);
+      executor.execute(() -> rebuild(all));
+      return;
+    }
+    switch (e.getType()) {
+      case TableModelEvent.INSERT -> {
+        if (last < model.getRowCount() - 1) {
+          // the model only appends; rows slipped in between would need slots of their own
+          List<Row> all = snapshot(0, model.getRowCount() - 1);
+          executor.execute(() -> rebuild(all));
+          return;
+        }
+        List<Row> added = snapshot(first, last);
+        executor.execute(() -> append(added));
+      }
+      case TableModelEvent.DELETE -> executor.execute(() -> delete(first, last));
+      default -> {
+        List<Row> changed = snapshot(first, last);
+        executor.execute(() -> update(first, changed));
+      }
+    }
+  }
+
+  /**
+   * Queues a search and returns at once; {@code onResult} gets the page on the event
+   * thread. Call from the event thread.
+   */
+  Search search(Filter filter, Consumer<Page> onResult) {
+    Search search = new Search();
+    long asOf = version;
+    executor.execute(() -> {
+      if (search.isCancelled()) return;
+      Page page = evaluate(filter, search, asOf);
+      if (page == null) return;
+      SwingUtilities.invokeLater(() -> {
+        if (!search.isCancelled()) onResult.accept(page);
+      });
+    });
+    return search;
+  }
+
+  /** False when the rows changed after the page was asked for, so its row numbers may be off. */
+  boolean isCurrent(Page page) {
+    return page.version == version;
+  }
+
+  /** Result cache counters for the dashboard. */
+  String describeCacheStats() {
+    long hits = cacheHits;
+    long lookups = hits + cacheMisses;
+    return String.format("Search cache: %d hits, %d misses (%d%% hit)",
+        hits, lookups - hits, lookups == 0 ? 0 : hits * 100 / lookups);
+  }
+
+  /** The rows as they are now; event thread only. */
+  private List<Row> snapshot(int first, int last) {
+    List<Row> list = new ArrayList<>(Math.max(0, last - first + 1));
+    for (int row = first; row <= last; row++) list.add(new Row(model.getVisitor(row)));
+    return list;
+  }
+
+  // Search thread
+
+  private Page evaluate(Filter filter, Search search, long asOf) {
+    String q = filter.query.toLowerCase(Locale.ROOT);
+    boolean dated = filter.from != null || filter.to != null;
+    int[] matches;
+    int total;
+    if (filter.fuzzy && !q.isBlank()) {
+      // ranked, so neither kept in slot order nor cached
+      matches = ranked(q, filter);
+      total = matches.length;
+    } else if (q.isEmpty() && filter.structured == null && !dated) {
+      // every row; nothing worth caching
+      matches = slotOfRow;
+      total = rowCount;
+    } else {
+      String key = cacheKey(q, filter);
+      CachedMatch cached = cache.get(key);
+      if (cached != null) {
+        cacheHits++;
+      } else {
+        cacheMisses++;
+        int[] found = matchSlots(q, filter, search);
+        if (found == null) return null;
+        cached = new CachedMatch(q, filter, found);
+        cache.put(key, cached);
+      }
+      matches = cached.slots;
+      total = cached.size;
+    }
+    int totalPages = 1;
+    int page = 1;
+    int start = 0;
+    int end = total;
+    if (filter.pageSize > 0) {
+      totalPages = Math.max(1, (total + filter.pageSize - 1) / filter.pageSize);
+      page = Math.max(1, Math.min(filter.page, totalPages));
+      start = Math.min(total, (page - 1) * filter.pageSize);
+      end = Math.min(total, start + filter.pageSize);
+    }
+    // slots follow model order, so the page's rows come out in row order too
+    int[] shown = new int[end - start];
+    for (int i = start; i < end; i++) shown[i - start] = rowOfSlot[matches[i]];
+    return new Page(shown, total, page, totalPages, asOf);
+  }
+
+  /** Slots whose name is close to the query and that pass the date range, closest first. */
+  private int[] ranked(String q, Filter filter) {
+    FuzzyNameIndex.Matches found = names.search(q, rows.size());
+    RowBitmap inRange = filter.from != null || filter.to != null ? dateSlots(filter) : null;
+    List<Integer> order = new ArrayList<>(found.slots.length);
+    for (int i = 0; i < found.slots.length; i++) {
+      if (inRange == null || inRange.contains(found.slots[i])) order.add(i);
+    }
+    // closest first; equally close names stay in row order
+    order.sort((a, b) -> Float.compare(found.scores[b], found.scores[a]));
+    int[] slots = new int[order.size()];
+    for (int i = 0; i < slots.length; i++) slots[i] = found.slots[order.get(i)];
+    return slots;
+  }
+
+  /** Slots passing the filter's text and date parts, in order; null if cancelled. */
+  private int[] matchSlots(String q, Filter filter, Search search) {
+    RowBitmap inRange = filter.from != null || filter.to != null ? dateSlots(filter) : null;
+    if (filter.structured != null) {
+      return planned(filter.structured, inRange, search);
+    }
+    int category = categoryIndex(filter.column);
+    if (q.isEmpty()) {
+      return inRange.toArray();
+    }
+    if (category >= 0) {
+      RowBitmap hits = categorySlots(category, q);
+      return (inRange == null ? hits : RowBitmap.and(hits, inRange)).toArray();
+    }
+    int[] matches = match(q, filter.column, search);
+    if (matches == null || inRange == null) return matches;
+    int found = 0;
+    for (int slot : matches) {
+      if (inRange.contains(slot)) matches[found++] = slot;
+    }
+    return Arrays.copyOf(matches, found);
+  }
+
+  /** Slots matching a parsed query and the date range, in order; null if cancelled. */
+  private int[] planned(VisitorQuery query, RowBitmap inRange, Search search) {
+    RowBitmap candidates = access(query.getRoot());
+    if (inRange != null) candidates = candidates == null ? inRange : RowBitmap.and(candidates, inRange);
+    int[] slots = candidates == null ? Arrays.copyOf(slotOfRow, rowCount) : candidates.toArray();
+    int found = 0;
+    for (int i = 0; i < slots.length; i++) {
+      if ((i & CANCEL_CHECK_MASK) == 0 && search.isCancelled()) return null;
+      Row row = rows.get(slots[i]);
+      if (query.test(row.text, row.checkIn, row.checkOut)) slots[found++] = slots[i];
+    }
+    return Arrays.copyOf(slots, found);
+  }
+
+  /**
+   * A superset of the slots a node can match, taken from the cheapest indexes that
+   * apply, or null when no index narrows it and every row has to be checked.
+   */
+  private RowBitmap access(VisitorQuery.Node node) {
+    if (node instanceof VisitorQuery.And and) {
+      List<VisitorQuery.Node> usable = new ArrayList<>();
+      for (VisitorQuery.Node part : and.parts) {
+        if (estimate(part) < Long.MAX_VALUE) usable.add(part);
+      }
+      if (usable.isEmpty()) return null;
+      usable.sort((a, b) -> Long.compare(estimate(a), estimate(b)));
+      RowBitmap result = access(usable.get(0));
+      for (int i = 1; i < usable.size() && !result.isEmpty(); i++) {
+        // a term matching most rows costs more to AND in than to check row by row
+        if (estimate(usable.get(i)) > rowCount / 4) break;
+        result = RowBitmap.and(result, access(usable.get(i)));
+      }
+      return result;
+    }
+    if (node instanceof VisitorQuery.Or or) {
+      if (estimate(or) == Long.MAX_VALUE) return null;
+      RowBitmap result = new RowBitmap();
+      for (VisitorQuery.Node part : or.parts) result.or(access(part));
+      return result;
+    }
+    if (node instanceof VisitorQuery.Text text) {
+      int category = categoryIndex(text.column);
+      if (category >= 0) {
+        RowBitmap hits = new RowBitmap();
+        for (Map.Entry<String, RowBitmap> value : categories.get(category).entrySet()) {
+          if (text.accepts(value.getKey())) hits.or(value.getValue());
+        }
+        return hits;
+      }
+      return text.value.length() < GRAM ? null : RowBitmap.of(candidates(text.value));
+    }
+    if (node instanceof VisitorQuery.Time time && !time.none && !time.clock) {
+      BitSet slots = new BitSet(rows.size());
+      (time.checkOut ? checkOuts : checkIns).slotsBetween(time.from, time.until, slots);
+      return RowBitmap.of(slots.stream().toArray());
+    }
+    return null;
+  }
+
+  /** About how many slots {@link #access} would return; MAX_VALUE when it returns null. */
+  private long estimate(VisitorQuery.Node node) {
+    if (node instanceof VisitorQuery.And and) {
+      long best = Long.MAX_VALUE;
+      for (VisitorQuery.Node part : and.parts) best = Math.min(best, estimate(part));
+      return best;
+    }
+    if (node instanceof VisitorQuery.Or or) {
+      long sum = 0;
+      for (VisitorQuery.Node part : or.parts) {
+        long size = estimate(part);
+        if (size == Long.MAX_VALUE) return Long.MAX_VALUE;
+        sum += size;
+      }
+      return sum;
+    }
+    if (node instanceof VisitorQuery.Text text) {
+      int category = categoryIndex(text.column);
+      if (category >= 0) {
+        long sum = 0;
+        for (Map.Entry<String, RowBitmap> value : categories.get(category).entrySet()) {
+          if (text.accepts(value.getKey())) sum += value.getValue().cardinality();
+        }
+        return sum;
+      }
+      if (text.value.length() < GRAM) return Long.MAX_VALUE;
+      long smallest = Long.MAX_VALUE;
+      for (int i = 0; i + GRAM <= text.value.length(); i++) {
+        Postings p = grams.get(key(text.value, i));
+        smallest = Math.min(smallest, p == null ? 0 : p.size);
+      }
+      return smallest;
+    }
+    if (node instanceof VisitorQuery.Time time && !time.none && !time.clock) {
+      return (time.checkOut ? checkOuts : checkIns).count(time.from, time.until);
+    }
+    return Long.MAX_VALUE;
+  }
+
+  private static String cacheKey(String q, Filter filter) {
+    if (filter.structured != null) {
+      return "?" + filter.from + "|" + filter.to + "|" + filter.useCheckOut + "|" + filter.structured;
+    }
+    return filter.column + "|" + filter.from + "|" + filter.to + "|" + filter.useCheckOut + "|" + q;
+  }
+
+  /** Slots whose chosen time falls on a day in the filter's range. */
+  private RowBitmap dateSlots(Filter filter) {
+    BitSet inRange = new BitSet(rows.size());
+    (filter.useCheckOut ? checkOuts : checkIns).slotsBetween(
+        filter.from == null ? Long.MIN_VALUE : startOf(filter.from),
+        filter.to == null ? Long.MAX_VALUE : startOf(filter.to.plusDays(1)),
+        inRange);
+    return RowBitmap.of(inRange.stream().toArray());
+  }
+
+  /** Slots of a category column whose value contains the lower-cased query. */
+  private RowBitmap categorySlots(int category, String q) {
+    RowBitmap hits = new RowBitmap();
+    for (Map.Entry<String, RowBitmap> value : categories.get(category).entrySet()) {
+      if (value.getKey().contains(q)) hits.or(value.getValue());
+    }
+    return hits;
+  }
+
+  private static int categoryIndex(int column) {
+    for (int i = 0; i < CATEGORY_COLUMNS.length; i++) {
+      if (CATEGORY_COLUMNS[i] == column) return i;
+    }
+    return -1;
+  }
+
+  private static long startOf(LocalDate date) {
+    return date.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+  }
+
+  private static long epochSecond(LocalDateTime time) {
+    // local wall-clock time read as UTC; only the order matters here
+    return time == null ? NO_TIME : time.toEpochSecond(ZoneOffset.UTC);
+  }
+
+  /** Live slots whose text contains the non-empty lower-cased query, in order; null if cancelled. */
+  private int[] match(String q, int column, Search search) {
+    int[] candidates;
+    if (lastMatches != null && column == lastColumn && q.contains(lastQuery)) {
+      candidates = lastMatches;
+    } else {
+      candidates = q.length() < GRAM ? Arrays.copyOf(slotOfRow, rowCount) : candidates(q);
+    }
+    int[] matches = new int[candidates.length];
+    int found = 0;
+    for (int i = 0; i < candidates.length; i++) {
+      if ((i & CANCEL_CHECK_MASK) == 0 && search.isCancelled()) return null;
+      int slot = candidates[i];
+      if (contains(rows.get(slot).text, q, column)) matches[found++] = slot;
+    }
+    matches = Arrays.copyOf(matches, found);
+    lastQuery = q;
+    lastColumn = column;
+    lastMatches = matches;
+    // the caller narrows its copy further by date
+    return matches.clone();
+  }
+
+  /** Slots holding every trigram of the query; a superset of the real matches. */
+  private int[] candidates(String q) {
+    List<Postings> lists = new ArrayList<>();
+    for (int i = 0; i + GRAM <= q.length(); i++) {
+      Postings p = grams.get(key(q, i));
+      if (p == null) return new int[0];
+      if (!lists.contains(p)) lists.add(p);
+    }
+    lists.sort((a, b) -> Integer.compare(a.size, b.size));
+    int[] result = Arrays.copyOf(lists.get(0).slots, lists.get(0).size);
+    int size = result.length;
+    for (int l = 1; l < lists.size() && size > 0; l++) {
+      Postings p = lists.get(l);
+      int out = 0;
+      int j = 0;
+      for (int i = 0; i < size; i++) {
+        int slot = result[i];
+        while (j < p.size && p.slots[j] < slot) j++;
+        if (j == p.size) break;
+        if (p.slots[j] == slot) result[out++] = slot;
+      }
+      size = out;
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  private static boolean contains(String[] text, String q, int column) {
+    if (column >= 0) {
+      return column < text.length && text[column].contains(q);
+    }
+    for (String cell : text) {
+      if (cell.contains(q)) return true;
+    }
+    return false;
+  }
+
+  /** Indexes the rows again under slots 0..n-1. */
+  private void rebuild(List<Row> live) {
+    lastMatches = null;
+    // cached slots mean nothing once they are handed out again
+    cache.clear();
+    grams.clear();
+    rows.clear();
+    rowCount = 0;
+    checkIns.clear();
+    checkOuts.clear();
+    for (Map<String, RowBitmap> values : categories) values.clear();
+    names.clear();
+    for (Row row : live) add(row);
+  }
+
+  private void append(List<Row> added) {
+    lastMatches = null;
+    for (Row row : added) {
+      int slot = add(row);
+      for (CachedMatch cached : cache.values()) {
+        if (cached.accepts(row)) cached.add(slot);
+      }
+    }
+  }
+
+  private int add(Row row) {
+    int slot = rows.size();
+    rows.add(row);
+    if (slot == rowOfSlot.length) rowOfSlot = Arrays.copyOf(rowOfSlot, slot * 2);
+    if (rowCount == slotOfRow.length) slotOfRow = Arrays.copyOf(slotOfRow, rowCount * 2);
+    rowOfSlot[slot] = rowCount;
+    slotOfRow[rowCount++] = slot;
+    index(slot, row, true);
+    return slot;
+  }
+
+  private void delete(int first, int last) {
+    lastMatches = null;
+    for (int r = first; r <= last; r++) {
+      int slot = slotOfRow[r];
+      index(slot, rows.get(slot), false);
+      rows.set(slot, null);
+      rowOfSlot[slot] = -1;
+      for (CachedMatch cached : cache.values()) cached.remove(slot);
+    }
+    // the rows after move up; their slots stay the same
+    System.arraycopy(slotOfRow, last + 1, slotOfRow, first, rowCount - last - 1);
+    rowCount -= last - first + 1;
+    for (int r = first; r < rowCount; r++) rowOfSlot[slotOfRow[r]] = r;
+    if (rows.size() - rowCount > Math.max(MIN_DEAD_SLOTS, rowCount)) {
+      List<Row> live = new ArrayList<>(rowCount);
+      for (int r = 0; r < rowCount; r++) live.add(rows.get(slotOfRow[r]));
+      rebuild(live);
+    }
+  }
+
+  private void update(int first, List<Row> changed) {
+    lastMatches = null;
+    for (int i = 0; i < changed.size(); i++) {
+      int slot = slotOfRow[first + i];
+      index(slot, rows.get(slot), false);
+      Row row = changed.get(i);
+      rows.set(slot, row);
+      index(slot, row, true);
+      for (CachedMatch cached : cache.values()) {
+        if (cached.accepts(row)) cached.add(slot); else cached.remove(slot);
+      }
+    }
+  }
+
+  private void index(int slot, Row row, boolean add) {
+    post(slot, row.text, add);
+    if (add) names.add(slot, row.text[0]); else names.remove(slot, row.text[0]);
+    if (row.checkIn != NO_TIME) {
+      if (add) checkIns.add(row.checkIn, slot); else checkIns.remove(row.checkIn, slot);
+    }
+    if (row.checkOut != NO_TIME) {
+      if (add) checkOuts.add(row.checkOut, slot); else checkOuts.remove(row.checkOut, slot);
+    }
+    for (int c = 0; c < CATEGORY_COLUMNS.length; c++) {
+      Map<String, RowBitmap> values = categories.get(c);
+      String value = row.text[CATEGORY_COLUMNS[c]];
+      if (add) {
+        values.computeIfAbsent(value, v -> new RowBitmap()).add(slot);
+      } else {
+        RowBitmap bitmap = values.get(value);
+        if (bitmap == null) continue;
+        bitmap.remove(slot);
+        if (bitmap.isEmpty()) values.remove(value);
+      }
+    }
+  }
+
+  private static String[] cellText(Visitor v) {
+    String[] text = new String[VisitorTableModel.COLUMN_COUNT];
+    for (int c = 0; c < text.length; c++) {
+      Object value = VisitorTableModel.cellValue(v, c);
+      text[c] = value == null ? "" : value.toString().toLowerCase(Locale.ROOT);
+    }
+    return text;
+  }
+
+  /** Adds or removes the slot under each trigram of its cells; none span two cells. */
+  private void post(int slot, String[] text, boolean add) {
+    for (String cell : text) {
+      for (int i = 0; i + GRAM <= cell.length(); i++) {
+        Long key = key(cell, i);
+        if (add) {
+          grams.computeIfAbsent(key, k -> new Postings()).add(slot);
+        } else {
+          Postings p = grams.get(key);
+          if (p != null) p.remove(slot);
+        }
+      }
+    }
+  }
+
+  private static long key(String s, int at) {
+    return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+  }
+}
@@ -1,12 +1,18 @@
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 
 class VisitorTableModel extends AbstractTableModel {
@@ -21,6 +27,7 @@ class VisitorTableModel extends AbstractTableModel {
       "Check-In",
       "Check-Out"
     };
+  static final int COLUMN_COUNT = COLUMNS.length;
 
   private final List<Visitor> visitors = new ArrayList<>();
 
@@ -28,7 +35,47 @@ class VisitorTableModel extends AbstractTableModel {
   private final List<Guard> guardsRef;
 
   private static final String SAVE_FOLDER = "src/data/";
-  private static final String SEP = "|"; // pipe-separated to avoid commas in text
+
+  // open visits from this many previous days stay in the live view
+  static final int CARRY_OVER_DAYS = 7;
+
+  // day shown as the live view, or null while a past day or a date range is loaded
+  private LocalDate liveDay;
+  // one journal per day file; visits are stored under their check-in date
+  private final Map<LocalDate, VisitorJournal> journals = new ConcurrentHashMap<>();
+  // problems found by the most recent load, if any
+  private JournalLoadReport lastLoadReport;
+  private final DataCatalog catalog = new DataCatalog(new File(SAVE_FOLDER));
+  private final JournalCompactor compactor = new JournalCompactor(catalog::changed);
+  private final JournalWriter writer = new JournalWriter(
+      DurabilityPolicy.fromSetting(System.getProperty("visitorlog.durability")), journals -> {
+        compactor.journalGrew();
+        journals.forEach(j -> catalog.changed(j.getFile()));
+      });
+  private final VisitorQueryEngine queryEngine = new VisitorQueryEngine(catalog);
+  // multi-day query still streaming rows into the model, if any
+  private VisitorQueryEngine.RangeScan rangeScan;
+  // compresses and archives closed days, one at a time, behind everything else
+  private final ExecutorService archiver = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "visitor-log-archiver");
+    t.setDaemon(true);
+    t.setPriority(Thread.MIN_PRIORITY);
+    return t;
+  });
+  private final VisitorSearchIndex searchIndex = new VisitorSearchIndex(this);
+  // open visits per gate, area and guard, kept by the mutators below; recounted only
+  // when the live view loads, so a past day or a range in view leaves it as it was
+  private final OccupancyTracker occupancy = new OccupancyTracker();
+  // deadlines of the same open visits, reported alongside
+  private final OverstayMonitor overstays = new OverstayMonitor(new File(SAVE_FOLDER, "overstay_limits.txt"));
+  // and by presented ID and contact number, for checking out without the table
+  private final OpenVisitIndex openVisits = new OpenVisitIndex();
+  // row of each record id as last seen; checked on use and rebuilt when it is stale
+  private final Map<Long, Integer> rowOfRecord = new HashMap<>();
+  // what returning visitors gave last time, for the entry form
+  private final VisitorProfileStore profiles = new VisitorProfileStore(new File(SAVE_FOLDER, "visitor_profiles.txt"), catalog);
+  // banned persons and flagged IDs, screened before a new entry is added
+  private final Watchlist watchlist = new Watchlist(new File(SAVE_FOLDER, "watchlist.txt"));
 
   @Override
   public int getRowCount() {
@@ -45,159 +92,303 @@ class VisitorTableModel extends AbstractTableModel {
     return COLUMNS[column];
   }
 
+  /**
+   * Names and times are typed, so the table sorts them by collation key and by epoch
+   * second instead of comparing the text shown; an empty time is null.
+   */
+  @Override
+  public Class<?> getColumnClass(int columnIndex) {
+    return switch (columnIndex) {
+      case 0 -> CollatedName.class;
+      case 7, 8 -> VisitTime.class;
+      default -> String.class;
+    };
+  }
+
   @Override
   public Object getValueAt(int rowIndex, int columnIndex) {
-    Visitor visitor = visitors.get(rowIndex);
+    return cellValue(visitors.get(rowIndex), columnIndex);
+  }
+
+  /** What a column shows for a visitor; also used to index rows off the event thread. */
+  static Object cellValue(Visitor visitor, int columnIndex) {
     return switch (columnIndex) {
-      case 0 -> visitor.getVisitorName();
+      case 0 -> visitor.getNameCell();
       case 1 -> visitor.getContactNumber();
       case 2 -> visitor.getPresentedId();
       case 3 -> visitor.getPurpose();
       case 4 -> visitor.getCampusArea();
       case 5 -> visitor.getGuardLabel();
       case 6 -> visitor.getGateEntered();
-      case 7 -> visitor.getCheckInTime();
-      case 8 -> visitor.getCheckOutTime();
+      case 7 -> visitor.getCheckInCell();
+      case 8 -> visitor.getCheckOutCell();
       default -> "";
     };
   }
 
   VisitorTableModel(List<Guard> guards, List<Admin> admins) {
     this.guardsRef = guards == null ? List.of() : guards;
-    loadFromFile();
+    loadToday();
+    overstays.start();
+    profiles.start();
+    watchlist.start();
+    // checked for here too so an idle guard screen still turns over at midnight
+    new javax.swing.Timer(60_000, e -> rollOverIfDue()).start();
+    archiver.execute(this::archiveClosedDays);
   }
 
   void addVisitor(Visitor visitor) {
+    if (visitor.getRecordId() == 0) {
+      visitor.assignRecordId(VisitorJournal.nextRecordId());
+    }
+    if (visitor.getLogDate() == null) {
+      // a visit is stored in the file for the day it checked in
+      visitor.assignLogDate(visitor.getCheckIn() == null ? LocalDate.now() : visitor.getCheckIn().toLocalDate());
+    }
+    rollOverIfDue();
     visitors.add(visitor);
     int row = visitors.size() - 1;
+    rowOfRecord.put(visitor.getRecordId(), row);
+    trackChanged(visitor);
+    profiles.remember(visitor);
     fireTableRowsInserted(row, row);
-    saveToFile();
+    journalFor(visitor).appendAdd(visitor);
   }
 
   boolean markCheckout(int rowIndex, LocalDateTime checkoutTime) {
-    boolean updated = visitors.get(rowIndex).markCheckout(checkoutTime);
+    return markCheckout(visitors.get(rowIndex), checkoutTime);
+  }
+
+  /**
+   * Checks out an open visit found by {@link #findOpenVisits}, which need not be in
+   * view. Its row, when there is one, is found by record id rather than by search.
+   */
+  boolean markCheckout(Visitor visitor, LocalDateTime checkoutTime) {
+    boolean updated = visitor.markCheckout(checkoutTime);
     if (updated) {
-      fireTableRowsUpdated(rowIndex, rowIndex);
-      saveToFile();
+      trackChanged(visitor);
+      int row = rowOf(visitor.getRecordId());
+      if (row >= 0) {
+        // a past day or a range in view holds its own copy of the visit
+        if (visitors.get(row) != visitor) visitors.get(row).markCheckout(checkoutTime);
+        fireTableRowsUpdated(row, row);
+      }
+      journalFor(visitor).appendCheckout(visitor);
     }
     return updated;
   }
 
+  /** Open visits by presented ID or contact number, oldest first; see {@link OpenVisitIndex}. */
+  List<Visitor> findOpenVisits(String presented) {
+    return openVisits.find(presented);
+  }
+
+  /** Row showing the record, or -1; rebuilds the row map when it has gone stale. */
+  private int rowOf(long recordId) {
+    for (int attempt = 0; attempt < 2; attempt++) {
+      Integer row = rowOfRecord.get(recordId);
+      if (row != null && row < visitors.size() && visitors.get(row).getRecordId() == recordId) return row;
+      if (attempt == 0) {
+        rowOfRecord.clear();
+        for (int i = 0; i < visitors.size(); i++) rowOfRecord.put(visitors.get(i).getRecordId(), i);
+      }
+    }
+    return -1;
+  }
+
   void removeVisitor(int rowIndex) {
-    visitors.remove(rowIndex);
+    Visitor removed = visitors.remove(rowIndex);
+    trackRemoved(removed);
     fireTableRowsDeleted(rowIndex, rowIndex);
-    saveToFile();
+    journalFor(removed).appendRemove(removed);
   }
 
   void updateVisitor(int rowIndex, VisitorFormData data) {
     if (rowIndex < 0 || rowIndex >= visitors.size()) {
       return;
     }
-    visitors.get(rowIndex).updateDetails(data);
+    Visitor visitor = visitors.get(rowIndex);
+    visitor.updateDetails(data);
+    trackChanged(visitor);
+    profiles.remember(visitor);
     fireTableRowsUpdated(rowIndex, rowIndex);
-    saveToFile();
+    journalFor(visitor).appendUpdate(visitor);
+  }
+
+  /**
+   * Tells the occupancy, overstay and open-visit trackers about a changed visit. They
+   * follow the live view, so an edit made while an older day or a range is shown only
+   * reaches them when the live view would hold the visit too.
+   */
+  private void trackChanged(Visitor visitor) {
+    if (!isLive(visitor)) return;
+    occupancy.visitorChanged(visitor);
+    overstays.visitorChanged(visitor);
+    openVisits.visitorChanged(visitor);
+  }
+
+  private void trackRemoved(Visitor visitor) {
+    if (!isLive(visitor)) return;
+    occupancy.visitorRemoved(visitor);
+    overstays.visitorRemoved(visitor);
+    openVisits.visitorRemoved(visitor);
+  }
+
+  /** Whether the visit falls in the days {@link #loadToday} reads. */
+  private boolean isLive(Visitor visitor) {
+    if (liveDay != null) return true;
+    LocalDate logDate = visitor.getLogDate();
+    return logDate == null || !logDate.isBefore(LocalDate.now().minusDays(CARRY_OVER_DAYS));
   }
 
   // Persistence helpers
-  private void saveToFile() {
-    // Get current date for filename
-    String dateStr = java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-    File f = new File(SAVE_FOLDER + "visitor_logs_" + dateStr + ".txt");
-    
-    // Ensure directory exists
-    f.getParentFile().mkdirs();
-    
-    try (BufferedWriter bw = new BufferedWriter(new FileWriter(f, false))) {
-      for (Visitor v : visitors) {
-        String checkIn = v.getCheckIn() == null ? "" : v.getCheckIn().toString();
-        String checkOut = v.getCheckOut() == null ? "" : v.getCheckOut().toString();
-        String[] parts = new String[] {
-            escape(v.getVisitorName()),
-            escape(v.getContactNumber()),
-            escape(v.getPresentedId()),
-            escape(v.getPurpose()),
-            escape(v.getCampusArea()),
-            escape(v.getGuardLabel()),
-            escape(v.getGateEntered()),
-            escape(checkIn),
-            escape(checkOut)
-        };
-        bw.write(String.join(SEP, parts));
-        bw.newLine();
-      }
-    } catch (IOException e) {
-      System.err.println("Failed to save visitor log: " + e.getMessage());
-    }
+  private static File dayFile(java.time.LocalDate date) {
+    String dateStr = date.format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+    return new File(SAVE_FOLDER + "visitor_logs_" + dateStr + ".txt");
   }
 
-  private static String escape(String s) {
-    if (s == null) return "";
-    return s.replace("\\", "\\\\").replace("|", "\\|");
+  /**
+   * Returns the journal of the day file a visitor belongs to. Whatever the table is
+   * showing, a mutation is only ever appended to that one file.
+   */
+  private VisitorJournal journalFor(Visitor visitor) {
+    return journalFor(visitor.getLogDate() == null ? LocalDate.now() : visitor.getLogDate());
   }
 
-  private static String unescape(String s) {
-    if (s == null) return "";
-    return s.replace("\\|", "|").replace("\\\\", "\\");
+  private VisitorJournal journalFor(LocalDate date) {
+    return journals.computeIfAbsent(date, d -> {
+      VisitorJournal journal = new VisitorJournal(dayFile(d), writer);
+      compactor.watch(journal);
+      return journal;
+    });
   }
 
-  private void loadFromFile() {
-    // Try to load today's file first, then check for most recent file
-    String dateStr = java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-    File f = new File(SAVE_FOLDER + "visitor_logs_" + dateStr + ".txt");
-    
-    if (!f.exists()) {
-      // Try to find the most recent log file
-      File folder = new File(SAVE_FOLDER);
-      if (folder.exists() && folder.isDirectory()) {
-        File[] files = folder.listFiles((dir, name) -> name.startsWith("visitor_logs_") && name.endsWith(".txt"));
-        if (files != null && files.length > 0) {
-          // Sort by date (filename) and get the most recent
-          java.util.Arrays.sort(files, (a, b) -> b.getName().compareTo(a.getName()));
-          f = files[0];
-        } else {
-          return;
-        }
-      } else {
-        return;
+  /**
+   * Background pass over the catalog at startup: days that are over and have no open
+   * visits are stored compressed, then every closed day gets its columnar archive so
+   * opening it later does not replay text.
+   */
+  private void archiveClosedDays() {
+    List<File> days = new ArrayList<>();
+    for (DataCatalog.Entry entry : catalog.days()) {
+      File f = catalog.fileFor(entry);
+      days.add(f);
+      LocalDate date = entry.getDate();
+      if (date == null || !VisitorArchive.isClosedDay(f) || entry.getOpenVisits() > 0) continue;
+      try {
+        // through the journal, so the swap cannot race an append to the same day
+        if (journalFor(date).compress()) catalog.changed(f);
+      } catch (IOException e) {
+        System.err.println("Failed to compress " + f.getName() + ": " + e.getMessage());
       }
     }
-    
-    try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-      String line;
-      while ((line = br.readLine()) != null) {
-        try {
-          String[] parts = splitLine(line);
-          int idx = 0;
-          // New format: name, contact, presentedId, purpose, campus, guard, gate, checkIn, checkOut
-          String name = unescape(partSafe(parts, idx++));
-          String contact = unescape(partSafe(parts, idx++));
-          String presentedId = unescape(partSafe(parts, idx++));
-          String purpose = unescape(partSafe(parts, idx++));
-          String campus = unescape(partSafe(parts, idx++));
-          String guardLabel = unescape(partSafe(parts, idx++));
-          idx++; // skip gate column (it's derived from guard)
-          String checkInRaw = unescape(partSafe(parts, idx++));
-          String checkOutRaw = unescape(partSafe(parts, idx));
-
-          Guard guard = findGuardByLabel(guardLabel);
-
-          LocalDateTime checkIn = checkInRaw.isEmpty() ? null : LocalDateTime.parse(checkInRaw);
-          LocalDateTime checkOut = checkOutRaw.isEmpty() ? null : LocalDateTime.parse(checkOutRaw);
-
-          Visitor v = Visitor.fromCsvFields(name, contact, presentedId, purpose, campus, guard, checkIn, checkOut);
-          visitors.add(v);
-        } catch (Exception inner) {
-          // skip malformed rows but continue
-          System.err.println("Skipping malformed saved visitor row: " + inner.getMessage());
+    VisitorArchive.convertClosedDays(days);
+  }
+
+  /**
+   * Moves the live view to the new day after midnight. Visits that are still open stay
+   * in the table, and in their own day's file; everything else is dropped from view.
+   * Nothing is written to the day files.
+   */
+  private void rollOverIfDue() {
+    LocalDate today = LocalDate.now();
+    if (liveDay == null || liveDay.equals(today)) {
+      return;
+    }
+    LocalDate previousDay = liveDay;
+    LocalDate oldest = today.minusDays(CARRY_OVER_DAYS);
+    visitors.removeIf(v -> v.getCheckOut() != null || (v.getLogDate() != null && v.getLogDate().isBefore(oldest)));
+    liveDay = today;
+    // the day just ended is measured again so its entry is current before anyone opens it
+    catalog.changed(dayFile(previousDay));
+    occupancy.reset(visitors);
+    overstays.reset(visitors);
+    openVisits.reset(visitors);
+    fireTableDataChanged();
+  }
+
+  /** Shows today's visits plus the ones from recent days that have not checked out. */
+  private void loadToday() {
+    LocalDate today = LocalDate.now();
+    visitors.clear();
+    lastLoadReport = null;
+    liveDay = today;
+    // the catalog knows which days still have open visits, so closed days are not read
+    for (DataCatalog.Entry entry : catalog.between(today.minusDays(CARRY_OVER_DAYS), today.minusDays(1))) {
+      if (entry.getOpenVisits() == 0) continue;
+      try {
+        for (Visitor v : readDay(catalog.fileFor(entry), null)) {
+          if (v.getCheckOut() == null) visitors.add(v);
         }
+      } catch (IOException e) {
+        System.err.println("Failed to load open visits from " + entry.getFileName() + ": " + e.getMessage());
       }
-      // ensure view gets new data after load
-      if (!visitors.isEmpty()) {
-        fireTableDataChanged();
+    }
+    File f = dayFile(today);
+    if (DayFiles.exists(f)) {
+      try {
+        lastLoadReport = new JournalLoadReport(f);
+        visitors.addAll(readDay(f, lastLoadReport));
+      } catch (IOException e) {
+        System.err.println("Failed to load visitor log: " + e.getMessage());
       }
-    } catch (IOException e) {
-      System.err.println("Failed to load visitor log: " + e.getMessage());
     }
+    occupancy.reset(visitors);
+    overstays.reset(visitors);
+    openVisits.reset(visitors);
+    fireTableDataChanged();
+  }
+
+  /** Reads a day from its archive when that is fresh, otherwise by replaying the file. */
+  private List<Visitor> readDay(File f, JournalLoadReport report) throws IOException {
+    List<Visitor> archived = VisitorArchive.loadIfFresh(f, this::findGuardByLabel);
+    if (archived != null) {
+      return archived;
+    }
+    List<Visitor> replayed = VisitorJournal.replay(f, this::findGuardByLabel, report);
+    if (VisitorArchive.isClosedDay(f)) {
+      // the rows are already here; the archive is for the next time the day is opened
+      archiver.execute(() -> VisitorArchive.convertClosedDays(List.of(f)));
+    }
+    return replayed;
+  }
+
+  /** Writes out every queued journal record; called on application exit. */
+  void flushPendingWrites() {
+    writer.flushAndClose(5000);
+    catalog.flush();
+  }
+
+  JournalLoadReport getLastLoadReport() {
+    return lastLoadReport;
+  }
+
+  JournalWriter getJournalWriter() {
+    return writer;
+  }
+
+  DataCatalog getCatalog() {
+    return catalog;
+  }
+
+  VisitorSearchIndex getSearchIndex() {
+    return searchIndex;
+  }
+
+  OccupancyTracker getOccupancy() {
+    return occupancy;
+  }
+
+  OverstayMonitor getOverstays() {
+    return overstays;
+  }
+
+  VisitorProfileStore getProfiles() {
+    return profiles;
+  }
+
+  Watchlist getWatchlist() {
+    return watchlist;
   }
 
   // Expose visitor by model index (used by advanced filtering and exports)
@@ -208,44 +399,77 @@ class VisitorTableModel extends AbstractTableModel {
 
   void loadFromSpecificFile(String filename) {
     File f = new File(SAVE_FOLDER + filename);
-    if (!f.exists()) {
+    if (!DayFiles.exists(f)) {
       System.err.println("File not found: " + filename);
+      catalog.forget(filename);
       return;
     }
     
+    cancelRangeLoad();
+    // make sure records still queued for this file are on disk before replaying it
+    writer.flush(5000);
+    if (f.equals(dayFile(LocalDate.now()))) {
+      // today's file means the live view, with the open visits carried over
+      loadToday();
+      return;
+    }
     visitors.clear();
-    
-    try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-      String line;
-      while ((line = br.readLine()) != null) {
-        try {
-          String[] parts = splitLine(line);
-          int idx = 0;
-          String name = unescape(partSafe(parts, idx++));
-          String contact = unescape(partSafe(parts, idx++));
-          String presentedId = unescape(partSafe(parts, idx++));
-          String purpose = unescape(partSafe(parts, idx++));
-          String campus = unescape(partSafe(parts, idx++));
-          String guardLabel = unescape(partSafe(parts, idx++));
-          idx++;
-          String checkInRaw = unescape(partSafe(parts, idx++));
-          String checkOutRaw = unescape(partSafe(parts, idx));
-
-          Guard guard = findGuardByLabel(guardLabel);
-
-          LocalDateTime checkIn = checkInRaw.isEmpty() ? null : LocalDateTime.parse(checkInRaw);
-          LocalDateTime checkOut = checkOutRaw.isEmpty() ? null : LocalDateTime.parse(checkOutRaw);
-
-          Visitor v = Visitor.fromCsvFields(name, contact, presentedId, purpose, campus, guard, checkIn, checkOut);
-          visitors.add(v);
-        } catch (Exception inner) {
-          System.err.println("Skipping malformed row: " + inner.getMessage());
-        }
-      }
-      fireTableDataChanged();
+    liveDay = null;
+    try {
+      lastLoadReport = new JournalLoadReport(f);
+      visitors.addAll(readDay(f, lastLoadReport));
     } catch (IOException e) {
       System.err.println("Failed to load file: " + e.getMessage());
     }
+    fireTableDataChanged();
+  }
+
+  /**
+   * Replaces the rows with every visit in the date range, read from all day files.
+   * Matches are appended on the event thread day by day, oldest first;
+   * {@code onProgress} runs after each batch with false and once more with true
+   * when the scan is done.
+   */
+  void loadRange(LocalDate from, LocalDate to, boolean useCheckOut, Consumer<Boolean> onProgress) {
+    cancelRangeLoad();
+    // records still queued for today's file should be part of the result
+    writer.flush(5000);
+    visitors.clear();
+    lastLoadReport = null;
+    liveDay = null;
+    fireTableDataChanged();
+
+    // the scan resolves guards on pool threads, so give it a copy of the roster
+    List<Guard> guards = new ArrayList<>(guardsRef);
+    rangeScan = queryEngine.scan(from, to, useCheckOut, label -> findGuard(guards, label),
+        new VisitorQueryEngine.Listener() {
+          @Override
+          public void batch(VisitorQueryEngine.RangeScan scan, List<Visitor> matches) {
+            SwingUtilities.invokeLater(() -> {
+              if (scan != rangeScan) return;
+              int first = visitors.size();
+              visitors.addAll(matches);
+              fireTableRowsInserted(first, visitors.size() - 1);
+              onProgress.accept(false);
+            });
+          }
+
+          @Override
+          public void finished(VisitorQueryEngine.RangeScan scan) {
+            SwingUtilities.invokeLater(() -> {
+              if (scan != rangeScan) return;
+              rangeScan = null;
+              onProgress.accept(true);
+            });
+          }
+        });
+  }
+
+  private void cancelRangeLoad() {
+    if (rangeScan != null) {
+      rangeScan.cancel();
+      rangeScan = null;
+    }
   }
 
   void exportToJsonFile(String filename) {
@@ -308,38 +532,14 @@ class VisitorTableModel extends AbstractTableModel {
   private static String safe(String s) { return s == null ? "" : s; }
 
   private Guard findGuardByLabel(String label) {
+    return findGuard(guardsRef, label);
+  }
+
+  private static Guard findGuard(List<Guard> guards, String label) {
     if (label == null || label.isEmpty()) return null;
-    for (Guard g : guardsRef) {
+    for (Guard g : guards) {
       if (label.equals(g.getDisplayLabel())) return g;
     }
     return null;
   }
-
-  private static String[] splitLine(String line) {
-    // split by separator '|', but honor escaped pipes (\\|)
-    List<String> parts = new ArrayList<>();
-    StringBuilder buf = new StringBuilder();
-    boolean escape = false;
-    for (int i = 0; i < line.length(); i++) {
-      char c = line.charAt(i);
-      if (escape) {
-        buf.append(c);
-        escape = false;
-      } else if (c == '\\') {
-        // next char is escaped
-        escape = true;
-      } else if (c == '|') {
-        parts.add(buf.toString());
-        buf.setLength(0);
-      } else {
-        buf.append(c);
-      }
-    }
-    parts.add(buf.toString());
-    return parts.toArray(String[]::new);
-  }
-
-  private static String partSafe(String[] arr, int idx) {
-    return idx < arr.length ? arr[idx] : "";
-  }
 }
@@ -0,0 +1,282 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banned persons and flagged IDs, checked against every new entry before it is logged.
+ *
+ * The list is {@code watchlist.txt} in the data folder, one entry per line:
+ *   kind|value|action|note
+ * where kind is {@code name}, {@code id} or {@code phone} and action is {@code deny}
+ * (the entry is refused) or {@code flag} (the guard is asked first). IDs and phone
+ * numbers are normalized as in {@link OpenVisitIndex} and looked up in hash maps.
+ * Names are accent-folded and found as whole words anywhere in the visitor's name by
+ * one Aho-Corasick pass, so "Juan dela Cruz" catches "Juan Dela Cruz Jr." but not
+ * "Juana Dela Cruz", and listing more variants of a name does not make the pass
+ * slower. A listed name of several words also matches written as one ("delacruz").
+ *
+ * The file is checked for changes every {@link #RELOAD_SECONDS} seconds and rebuilt
+ * off the event thread; screening reads whichever list was built last, without locks.
+ */
+class Watchlist {
+  static final int RELOAD_SECONDS = 5;
+
+  /** One line of the list. */
+  static final class Entry {
+    final String kind;
+    final String value;
+    final boolean deny;
+    final String note;
+
+    Entry(String kind, String value, boolean deny, String note) {
+      this.kind = kind;
+      this.value = value;
+      this.deny = deny;
+      this.note = note;
+    }
+
+    @Override
+    public String toString() {
+      return (deny ? "Denied " : "Flagged ") + kind + " \"" + value + "\"" + (note.isEmpty() ? "" : ": " + note);
+    }
+  }
+
+  /** One loaded list; never changed once published. */
+  private static final class Rules {
+    final Map<String, List<Entry>> ids = new HashMap<>();
+    final Map<String, List<Entry>> phones = new HashMap<>();
+    final NameMatcher names;
+    final int size;
+
+    Rules(List<Entry> entries) {
+      List<String> patterns = new ArrayList<>();
+      List<Entry> owners = new ArrayList<>();
+      for (Entry e : entries) {
+        switch (e.kind) {
+          case "id" -> add(ids, OpenVisitIndex.idKey(e.value), e);
+          case "phone" -> add(phones, OpenVisitIndex.contactKey(e.value), e);
+          default -> {
+            String[] words = FuzzyNameIndex.words(e.value);
+            if (words.length == 0) continue;
+            patterns.add(" " + String.join(" ", words) + " ");
+            owners.add(e);
+            if (words.length > 1) {
+              patterns.add(" " + String.join("", words) + " ");
+              owners.add(e);
+            }
+          }
+        }
+      }
+      names = new NameMatcher(patterns, owners);
+      size = entries.size();
+    }
+
+    private static void add(Map<String, List<Entry>> map, String key, Entry e) {
+      if (key != null) map.computeIfAbsent(key, k -> new ArrayList<>(1)).add(e);
+    }
+  }
+
+  /**
+   * Aho-Corasick automaton over the listed names. Transitions are kept in one hash map
+   * keyed by state and character; {@code fail} is the longest proper suffix that is
+   * also a prefix, and {@code output} chains the patterns ending at each state.
+   */
+  private static final class NameMatcher {
+    private final Map<Long, Integer> next = new HashMap<>();
+    private int[] fail;
+    private int[] output;     // pattern ending here, or -1
+    private int[] outputLink; // next state along the fail chain with an output, or -1
+    private final List<Entry> owners;
+
+    NameMatcher(List<String> patterns, List<Entry> owners) {
+      this.owners = owners;
+      int states = 1;
+      int[] ends = new int[patterns.size()];
+      for (int p = 0; p < patterns.size(); p++) {
+        String pattern = patterns.get(p);
+        int state = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+          long key = key(state, pattern.charAt(i));
+          Integer to = next.get(key);
+          if (to == null) {
+            to = states++;
+            next.put(key, to);
+          }
+          state = to;
+        }
+        ends[p] = state;
+      }
+      output = new int[states];
+      Arrays.fill(output, -1);
+      for (int p = 0; p < ends.length; p++) {
+        // a name listed twice keeps its first entry
+        if (output[ends[p]] < 0) output[ends[p]] = p;
+      }
+      buildFailLinks(states);
+    }
+
+    private void buildFailLinks(int states) {
+      fail = new int[states];
+      outputLink = new int[states];
+      Arrays.fill(outputLink, -1);
+      // children of each state, for the breadth-first walk
+      Map<Integer, List<long[]>> children = new HashMap<>();
+      for (Map.Entry<Long, Integer> edge : next.entrySet()) {
+        int from = (int) (edge.getKey() >>> 16);
+        char c = (char) (edge.getKey() & 0xFFFF);
+        children.computeIfAbsent(from, k -> new ArrayList<>()).add(new long[] {c, edge.getValue()});
+      }
+      ArrayDeque<Integer> queue = new ArrayDeque<>();
+      for (long[] child : children.getOrDefault(0, List.of())) queue.add((int) child[1]);
+      while (!queue.isEmpty()) {
+        int state = queue.poll();
+        for (long[] child : children.getOrDefault(state, List.of())) {
+          char c = (char) child[0];
+          int to = (int) child[1];
+          int f = fail[state];
+          while (f != 0 && !next.containsKey(key(f, c))) f = fail[f];
+          Integer target = next.get(key(f, c));
+          fail[to] = target == null ? 0 : target;
+          outputLink[to] = output[fail[to]] >= 0 ? fail[to] : outputLink[fail[to]];
+          queue.add(to);
+        }
+      }
+    }
+
+    /** Entries whose name occurs in the text, in the order they are found. */
+    void match(String text, List<Entry> into) {
+      int state = 0;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        Integer to = next.get(key(state, c));
+        while (to == null && state != 0) {
+          state = fail[state];
+          to = next.get(key(state, c));
+        }
+        state = to == null ? 0 : to;
+        for (int s = output[state] >= 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+          Entry e = owners.get(output[s]);
+          if (!into.contains(e)) into.add(e);
+        }
+      }
+    }
+
+    private static long key(int state, char c) {
+      return ((long) state << 16) | c;
+    }
+  }
+
+  private final File file;
+  private volatile Rules rules = new Rules(List.of());
+  // set once a list has been read, or the file was found not to exist
+  private volatile boolean loaded;
+  // why the file could not be read, while no list has been
+  private volatile String loadError;
+  private long loadedModified = -1;
+  private long loadedLength = -1;
+
+  Watchlist(File file) {
+    this.file = file;
+  }
+
+  /** Loads the list and then watches the file for changes, on a background thread. */
+  void start() {
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "visitor-watchlist");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    });
+    executor.scheduleWithFixedDelay(this::reloadIfChanged, 0, RELOAD_SECONDS, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Whether the list has been read since start. Until then {@link #screen} would pass
+   * everyone, so callers refuse entries rather than let them through unchecked.
+   */
+  boolean isLoaded() {
+    return loaded;
+  }
+
+  /** Why the list could not be read, or null when it is loaded or still loading. */
+  String getLoadError() {
+    return loaded ? null : loadError;
+  }
+
+  /** Entries the new visit matches, denials first; empty when it is clear. */
+  List<Entry> screen(VisitorFormData data) {
+    Rules current = rules;
+    List<Entry> hits = new ArrayList<>(0);
+    List<Entry> byId = current.ids.get(OpenVisitIndex.idKey(data.getPresentedId()));
+    if (byId != null) hits.addAll(byId);
+    List<Entry> byPhone = current.phones.get(OpenVisitIndex.contactKey(data.getContactNumber()));
+    if (byPhone != null) hits.addAll(byPhone);
+    String[] words = FuzzyNameIndex.words(data.getVisitorName());
+    if (words.length > 0) current.names.match(" " + String.join(" ", words) + " ", hits);
+    hits.sort((a, b) -> Boolean.compare(b.deny, a.deny));
+    return hits;
+  }
+
+  /** Entries in the list as last loaded. */
+  int size() {
+    return rules.size;
+  }
+
+  private synchronized void reloadIfChanged() {
+    long modified = file.lastModified();
+    long length = file.length();
+    if (modified == loadedModified && length == loadedLength) return;
+    List<Entry> entries = load();
+    if (entries != null) {
+      loadedModified = modified;
+      loadedLength = length;
+      rules = new Rules(entries);
+      loaded = true;
+    }
+  }
+
+  /** The entries in the file; null when it could not be read, so the last list stays. */
+  private List<Entry> load() {
+    List<Entry> entries = new ArrayList<>();
+    if (!file.exists()) {
+      return entries;
+    }
+    try (PipeLineReader reader = new PipeLineReader(new FileInputStream(file))) {
+      while (reader.nextLine()) {
+        if (reader.lineLength() == 0 || reader.startsWith('#')) continue;
+        reader.split();
+        if (reader.isBlank()) continue;
+        String kind = reader.field(0).trim().toLowerCase(Locale.ROOT);
+        String action = reader.field(2).trim().toLowerCase(Locale.ROOT);
+        if (!kind.equals("name") && !kind.equals("id") && !kind.equals("phone")) {
+          System.err.println("Ignoring watchlist line " + reader.lineNumber() + ": unknown kind '" + reader.field(0) + "'");
+          continue;
+        }
+        if (!action.equals("deny") && !action.equals("flag")) {
+          System.err.println("Ignoring watchlist line " + reader.lineNumber() + ": action must be deny or flag");
+          continue;
+        }
+        if (kind.equals("id") && VisitorFormPanel.isIdType(reader.field(1).trim())) {
+          System.err.println("Ignoring watchlist line " + reader.lineNumber() + ": '" + reader.field(1) + "' is an ID type, not an ID");
+          continue;
+        }
+        entries.add(new Entry(kind, reader.field(1).trim(), action.equals("deny"), reader.field(3).trim()));
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to load watchlist: " + e.getMessage());
+      loadError = e.getMessage();
+      return null;
+    }
+    return entries;
+  }
+}